@@ -18,6 +18,7 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-engine:5.10.0")
     testImplementation("org.assertj:assertj-core:3.24.2")
     testImplementation("org.mockito:mockito-core:3.1.0")
+    testImplementation("org.openjdk.jol:jol-core:0.17")
 }
 
 group = "xyz.kyngs"
@@ -0,0 +1,185 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Resolves page names against base URL. Base URL is parsed only once, relative names which consist only
+ * of characters allowed in URI path and query are appended to it without parsing. Other names
+ * (absolute URLs, names with fragment, percent sign, dot segment, non-ASCII characters, ...)
+ * are parsed by URI and URL, result is the same in both cases.
+ */
+final class AbsoluteUrlResolver {
+
+    /**
+     * ASCII characters which can be appended to base URL without parsing: unreserved, sub-delims, ":", "@", "/" and "?"
+     */
+    private static final boolean[] SAFE_CHARACTERS = new boolean[128];
+
+    static {
+        String safeCharacters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~!$&'()*+,;=:@/?";
+        for (int i = 0; i < safeCharacters.length(); i++) {
+            SAFE_CHARACTERS[safeCharacters.charAt(i)] = true;
+        }
+    }
+
+    private final String baseUrl;
+
+    /**
+     * Base URL ending with "/", names are connected to it by {@link #connect(String)}
+     */
+    private final String connectPrefix;
+
+    /**
+     * Base URL ending with "/" in the form returned by URL, or null when names can't be appended to it without parsing
+     */
+    private final String prefix;
+
+    AbsoluteUrlResolver(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.connectPrefix = UrlUtil.connectUrlParts(baseUrl, "");
+        this.prefix = fastPathPrefix(connectPrefix);
+    }
+
+    private static String fastPathPrefix(String prefix) {
+        try {
+            URI uri = new URI(prefix);
+            if (!uri.isAbsolute() || uri.getRawQuery() != null || uri.getRawFragment() != null
+                    || !prefix.equals(new URL(prefix).toString())) {
+                return null;
+            }
+            return prefix;
+        } catch (MalformedURLException | URISyntaxException e) {
+            return null;
+        }
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Connect base URL and name, result is the same as result of {@link UrlUtil#connectUrlParts(String, String)}
+     *
+     * @param webPageName Name
+     * @return Base URL and name
+     */
+    String connect(String webPageName) {
+        return webPageName == null ? baseUrl : UrlUtil.connectUrlParts(connectPrefix, webPageName);
+    }
+
+    /**
+     * Resolve name: if it's null, return base URL, if it's absolute URL, return it, otherwise append it to base URL
+     *
+     * @param webPageName Name
+     * @return Absolute URL
+     * @throws MalformedURLException when result isn't valid URL
+     * @throws URISyntaxException    when name isn't valid URI
+     */
+    String resolve(String webPageName) throws MalformedURLException, URISyntaxException {
+        if (webPageName != null && prefix != null && isSimpleRelativeName(webPageName)) {
+            return UrlUtil.connectUrlParts(prefix, webPageName);
+        }
+        return resolveByUriAndUrl(baseUrl, webPageName);
+    }
+
+    /**
+     * Append resolved name to builder, if it can be resolved without parsing and it doesn't contain XML special characters
+     *
+     * @param builder     Builder
+     * @param webPageName Name
+     * @return true if name was appended, false if builder wasn't changed
+     */
+    boolean appendTo(StringBuilder builder, String webPageName) {
+        if (!isAppendable(webPageName)) {
+            return false;
+        }
+        // name doesn't start with "//", only single "/" is skipped
+        builder.append(prefix).append(webPageName, webPageName.startsWith("/") ? 1 : 0, webPageName.length());
+        return true;
+    }
+
+    /**
+     * Write resolved name into writer, if it can be resolved without parsing and it doesn't contain XML special characters
+     *
+     * @param writer      Writer
+     * @param webPageName Name
+     * @return true if name was written, false if nothing was written
+     * @throws IOException when error
+     */
+    boolean writeTo(Writer writer, String webPageName) throws IOException {
+        if (!isAppendable(webPageName)) {
+            return false;
+        }
+        int start = webPageName.startsWith("/") ? 1 : 0;
+        writer.write(prefix);
+        writer.write(webPageName, start, webPageName.length() - start);
+        return true;
+    }
+
+    private boolean isAppendable(String webPageName) {
+        return webPageName != null && prefix != null && isSimpleRelativeName(webPageName)
+                && webPageName.indexOf('&') == -1 && webPageName.indexOf('\'') == -1;
+    }
+
+    /**
+     * Check that name is relative, URI would parse it as path and query only
+     * and URL wouldn't normalize it (dot segments)
+     */
+    private static boolean isSimpleRelativeName(String name) {
+        if (name.startsWith("//")) {
+            // authority
+            return false;
+        }
+        boolean firstSegment = true;
+        char previous = '/';
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 128 || !SAFE_CHARACTERS[c]) {
+                return false;
+            }
+            if (c == ':' && firstSegment) {
+                // scheme
+                return false;
+            }
+            if (c == '.' && previous == '/') {
+                // dot segment
+                return false;
+            }
+            if (c == '/' || c == '?') {
+                firstSegment = false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    /**
+     * Resolve name by parsing it by URI and result by URL
+     *
+     * @param baseUrl     Base URL
+     * @param webPageName Name
+     * @return Absolute URL
+     * @throws MalformedURLException when result isn't valid URL
+     * @throws URISyntaxException    when name isn't valid URI
+     */
+    static String resolveByUriAndUrl(String baseUrl, String webPageName) throws MalformedURLException, URISyntaxException {
+        String resultString;
+        if (webPageName != null) {
+            URI uri = new URI(webPageName);
+            if (uri.isAbsolute()) {
+                resultString = webPageName;
+            } else {
+                resultString = UrlUtil.connectUrlParts(baseUrl, webPageName);
+            }
+        } else {
+            resultString = baseUrl;
+        }
+        return new URL(resultString).toString();
+    }
+
+}
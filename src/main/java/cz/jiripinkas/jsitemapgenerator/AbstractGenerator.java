@@ -1,6 +1,8 @@
 package cz.jiripinkas.jsitemapgenerator;
 
 import cz.jiripinkas.jsitemapgenerator.exception.InvalidUrlException;
+import cz.jiripinkas.jsitemapgenerator.store.PageStore;
+import cz.jiripinkas.jsitemapgenerator.store.SortedPageStore;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -21,11 +23,24 @@ import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 /**
  * Abstract Generator
@@ -34,10 +49,39 @@ import java.util.function.Supplier;
  */
 public abstract class AbstractGenerator<I extends AbstractGenerator> {
 
-    protected Map<String, WebPage> urls = new TreeMap<>();
+    protected PageStore urls = new SortedPageStore();
 
     protected String baseUrl;
 
+    /**
+     * Pages with deferred names, they are added to urls when names are resolved
+     */
+    private final ConcurrentLinkedQueue<DeferredPage> deferredPages = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of queued deferred pages, sequence numbers of adds are needed only when it isn't 0
+     */
+    private final AtomicInteger pendingDeferredPages = new AtomicInteger();
+
+    private final AtomicLong addSequence = new AtomicLong();
+
+    /**
+     * Sequence number of the last add of URL while deferred pages were queued. Deferred page which is resolved
+     * to URL that was added later isn't added, so the last added page wins (same as without deferred names)
+     */
+    private final Map<String, Long> addSequences = new ConcurrentHashMap<>();
+
+    private Executor deferredNameExecutor;
+
+    private int deferredNameConcurrency = 16;
+
+    private int deferredNameBatchSize = 1000;
+
+    /**
+     * Resolver of current base URL, it's immutable, so it can be replaced without synchronization
+     */
+    private AbsoluteUrlResolver absoluteUrlResolver;
+
     /**
      * Construct web sitemap.
      *
@@ -70,17 +114,66 @@ public abstract class AbstractGenerator<I extends AbstractGenerator> {
     }
 
     /**
-     * Add single page to sitemap
+     * Set store of pages. Pages which were already added are moved into the new store.
+     * Default store is {@link SortedPageStore}, see {@link PageStore} for other implementations.
+     *
+     * @param pageStore Page store
+     * @return this
+     */
+    public I pageStore(PageStore pageStore) {
+        Objects.requireNonNull(pageStore);
+        urls.forEach(pageStore::put);
+        urls = pageStore;
+        return getThis();
+    }
+
+    /**
+     * Add single page to sitemap.
+     * This method is thread-safe when page store is thread-safe (see {@link cz.jiripinkas.jsitemapgenerator.store.ConcurrentPageStore})
+     * and generator isn't configured at the same time.
      *
      * @param webPage single page
      * @return this
      */
     public I addPage(WebPage webPage) {
-        beforeAddPageEvent(webPage);
-        urls.put(UrlUtil.connectUrlParts(baseUrl, webPage.constructName()), webPage);
+        if (webPage.isDeferred()) {
+            synchronized (deferredPages) {
+                // queue is in order of sequence numbers
+                pendingDeferredPages.incrementAndGet();
+                deferredPages.add(new DeferredPage(webPage, addSequence.incrementAndGet()));
+            }
+            afterAddPageEvent(webPage, null);
+            return getThis();
+        }
+        putPage(webPage, 0);
         return getThis();
     }
 
+    /**
+     * Put page to urls
+     *
+     * @param webPage  WebPage
+     * @param sequence Sequence number of deferred page, 0 for page without deferred names
+     */
+    private void putPage(WebPage webPage, long sequence) {
+        beforeAddPageEvent(webPage);
+        String url = absoluteUrlResolver().connect(webPage.constructName());
+        if (pendingDeferredPages.get() > 0) {
+            if (sequence == 0) {
+                sequence = addSequence.incrementAndGet();
+            } else {
+                Long lastSequence = addSequences.get(url);
+                if (lastSequence != null && lastSequence > sequence) {
+                    // URL was added after this page
+                    return;
+                }
+            }
+            addSequences.merge(url, sequence, Math::max);
+        }
+        WebPage replacedWebPage = urls.put(url, webPage);
+        afterAddPageEvent(webPage, replacedWebPage);
+    }
+
     /**
      * Add single page to sitemap. This method calls addPage(WebPage.of(name))
      *
@@ -109,6 +202,20 @@ public abstract class AbstractGenerator<I extends AbstractGenerator> {
     }
 
 
+    /**
+     * Get resolver of base URL, base URL is parsed only when it was changed
+     *
+     * @return Resolver
+     */
+    AbsoluteUrlResolver absoluteUrlResolver() {
+        AbsoluteUrlResolver resolver = absoluteUrlResolver;
+        if (resolver == null || !resolver.getBaseUrl().equals(baseUrl)) {
+            resolver = new AbsoluteUrlResolver(baseUrl);
+            absoluteUrlResolver = resolver;
+        }
+        return resolver;
+    }
+
     /**
      * This method is called before adding a page to urls.
      * It can be used to change webPage attributes
@@ -119,6 +226,133 @@ public abstract class AbstractGenerator<I extends AbstractGenerator> {
 
     }
 
+    /**
+     * This method is called after a page was added to urls (or queued until its deferred names are resolved).
+     * It can be used to invalidate state which depends on urls
+     *
+     * @param webPage         WebPage
+     * @param replacedWebPage WebPage with the same URL which was replaced by webPage, or null
+     */
+    protected void afterAddPageEvent(WebPage webPage, WebPage replacedWebPage) {
+
+    }
+
+    /**
+     * Set how deferred names of pages are resolved (see {@link WebPage.WebPageBuilder#deferredName(Supplier)}).
+     * Default executor runs every task in new virtual thread on Java 21+, default max. concurrency is 16.
+     *
+     * @param executor       Executor which resolves names, null means default executor
+     * @param maxConcurrency Max. number of suppliers and batch resolvers which run at the same time
+     * @return this
+     */
+    public I deferredNameResolution(Executor executor, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max. concurrency must be at least 1");
+        }
+        this.deferredNameExecutor = executor;
+        this.deferredNameConcurrency = maxConcurrency;
+        return getThis();
+    }
+
+    /**
+     * Set max. number of keys which are passed to {@link BatchNameResolver} at once. Default is 1000.
+     *
+     * @param batchSize Batch size
+     * @return this
+     */
+    public I deferredNameBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.deferredNameBatchSize = batchSize;
+        return getThis();
+    }
+
+    /**
+     * Resolve deferred names of all queued pages and add pages to urls in order in which they were added,
+     * page isn't added when its URL was added later by other page.
+     * It's called before sitemap is rendered, when resolution fails, pages stay queued.
+     */
+    protected void resolveDeferredPages() {
+        List<DeferredPage> webPages = new ArrayList<>();
+        DeferredPage webPage;
+        while ((webPage = deferredPages.poll()) != null) {
+            webPages.add(webPage);
+        }
+        if (webPages.isEmpty()) {
+            return;
+        }
+        List<DeferredName> deferredNames = new ArrayList<>();
+        for (DeferredPage deferredPage : webPages) {
+            deferredNames.addAll(deferredPage.webPage.getDeferredNames());
+        }
+        try {
+            DeferredName.resolve(deferredNames,
+                    deferredNameExecutor != null ? deferredNameExecutor : getDefaultAsyncExecutor(),
+                    deferredNameConcurrency, deferredNameBatchSize);
+        } catch (RuntimeException | Error e) {
+            synchronized (deferredPages) {
+                // keep queue in order of sequence numbers
+                List<DeferredPage> laterPages = new ArrayList<>(deferredPages);
+                deferredPages.clear();
+                deferredPages.addAll(webPages);
+                deferredPages.addAll(laterPages);
+            }
+            throw e;
+        }
+        for (DeferredPage deferredPage : webPages) {
+            deferredPage.webPage.applyDeferredNames();
+            putPage(deferredPage.webPage, deferredPage.sequence);
+        }
+        synchronized (deferredPages) {
+            if (pendingDeferredPages.addAndGet(-webPages.size()) == 0) {
+                addSequences.clear();
+            }
+        }
+    }
+
+    private static final class DeferredPage {
+
+        private final WebPage webPage;
+
+        private final long sequence;
+
+        private DeferredPage(WebPage webPage, long sequence) {
+            this.webPage = webPage;
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * Default executor of async methods and of deferred name resolution. On Java 21+ every task runs in new virtual thread,
+     * on older Java tasks run in cached pool of daemon threads.
+     *
+     * @return Executor
+     */
+    protected Executor getDefaultAsyncExecutor() {
+        return DefaultAsyncExecutorHolder.EXECUTOR;
+    }
+
+    private static class DefaultAsyncExecutorHolder {
+
+        private static final Executor EXECUTOR = createDefaultAsyncExecutor();
+
+        private static Executor createDefaultAsyncExecutor() {
+            try {
+                // Java 21+, this library is compiled for older Java
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "sitemap-generator-async");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+
+    }
+
     /**
      * Add collection of pages to sitemap
      *
@@ -205,6 +439,130 @@ public abstract class AbstractGenerator<I extends AbstractGenerator> {
         return getThis();
     }
 
+    /**
+     * Add stream of pages to sitemap. Pages are consumed one by one, so they don't have to be collected first
+     * (for example when they're read from database cursor). Stream isn't closed.
+     *
+     * @param webPages Stream of pages
+     * @return this
+     */
+    public I addPages(Stream<WebPage> webPages) {
+        webPages.forEachOrdered(this::addPage);
+        return getThis();
+    }
+
+    /**
+     * Add stream of pages to sitemap. Elements are consumed one by one, so they don't have to be collected first
+     * (for example when they're read from database cursor). Stream isn't closed.
+     *
+     * @param <T>      This is the type parameter
+     * @param webPages Stream of elements
+     * @param mapper   Mapper function which transforms some object to WebPage
+     * @return this
+     */
+    public <T> I addPages(Stream<T> webPages, Function<T, WebPage> mapper) {
+        webPages.forEachOrdered(element -> addPage(mapper.apply(element)));
+        return getThis();
+    }
+
+    /**
+     * Add stream of pages to sitemap. Elements are consumed one by one, so they don't have to be collected first
+     * (for example when they're read from database cursor). Stream isn't closed.
+     *
+     * @param <T>      This is the type parameter
+     * @param webPages Stream of elements
+     * @param mapper   Mapper function which transforms some object to String. This will be passed to WebPage.of(name)
+     * @return this
+     */
+    public <T> I addPageNames(Stream<T> webPages, Function<T, String> mapper) {
+        webPages.forEachOrdered(element -> addPage(WebPage.of(mapper.apply(element))));
+        return getThis();
+    }
+
+    /**
+     * Add pages returned by iterator to sitemap. Pages are consumed one by one, so they don't have to be collected first.
+     *
+     * @param webPages Iterator of pages
+     * @return this
+     */
+    public I addPages(Iterator<WebPage> webPages) {
+        webPages.forEachRemaining(this::addPage);
+        return getThis();
+    }
+
+    /**
+     * Add pages returned by iterator to sitemap. Elements are consumed one by one, so they don't have to be collected first.
+     *
+     * @param <T>      This is the type parameter
+     * @param webPages Iterator of elements
+     * @param mapper   Mapper function which transforms some object to WebPage
+     * @return this
+     */
+    public <T> I addPages(Iterator<T> webPages, Function<T, WebPage> mapper) {
+        webPages.forEachRemaining(element -> addPage(mapper.apply(element)));
+        return getThis();
+    }
+
+    /**
+     * Add pages returned by spliterator to sitemap. Pages are consumed one by one, so they don't have to be collected first.
+     *
+     * @param webPages Spliterator of pages
+     * @return this
+     */
+    public I addPages(Spliterator<WebPage> webPages) {
+        webPages.forEachRemaining(this::addPage);
+        return getThis();
+    }
+
+    /**
+     * Collector which adds pages from stream into generator created by supplier.
+     * Every thread of parallel stream adds pages into its own generator (and page store), so threads don't contend,
+     * partial generators are merged at the end: pages of one generator are put into page store of the other one.
+     * Page which is later in the stream replaces page with the same URL, same as {@link #addPages(Stream)}.
+     *
+     * @param <G>               Type of generator
+     * @param generatorSupplier Supplier of new configured generator, it's called for every partial result
+     * @return Collector
+     */
+    public static <G extends AbstractGenerator<G>> Collector<WebPage, ?, G> collector(Supplier<G> generatorSupplier) {
+        return Collector.of(generatorSupplier, AbstractGenerator::addPage, AbstractGenerator::addPagesOf, Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Add all pages of other generator, pages of other generator replace pages with the same URL.
+     * Pages of other generator get new sequence numbers in the same order as they had in other generator,
+     * all of them are after pages of this generator.
+     *
+     * @param generator Other generator
+     * @return this
+     */
+    private I addPagesOf(AbstractGenerator<?> generator) {
+        synchronized (deferredPages) {
+            List<DeferredPage> otherDeferredPages = new ArrayList<>(generator.deferredPages);
+            // sequence numbers of other generator mapped to new sequence numbers of this generator
+            TreeMap<Long, Long> sequences = new TreeMap<>();
+            otherDeferredPages.forEach(deferredPage -> sequences.put(deferredPage.sequence, 0L));
+            generator.addSequences.values().forEach(sequence -> sequences.put(sequence, 0L));
+            // pages which were added before deferred pages of other generator don't have sequence number
+            long firstSequence = addSequence.incrementAndGet();
+            sequences.replaceAll((sequence, newSequence) -> addSequence.incrementAndGet());
+            pendingDeferredPages.addAndGet(otherDeferredPages.size());
+            for (DeferredPage deferredPage : otherDeferredPages) {
+                deferredPages.add(new DeferredPage(deferredPage.webPage, sequences.get(deferredPage.sequence)));
+                afterAddPageEvent(deferredPage.webPage, null);
+            }
+            boolean pending = pendingDeferredPages.get() > 0;
+            generator.urls.forEach((url, webPage) -> {
+                if (pending) {
+                    Long sequence = generator.addSequences.get(url);
+                    addSequences.merge(url, sequence != null ? sequences.get(sequence) : firstSequence, Math::max);
+                }
+                afterAddPageEvent(webPage, urls.put(url, webPage));
+            });
+        }
+        return getThis();
+    }
+
     /**
      * Run some method
      *
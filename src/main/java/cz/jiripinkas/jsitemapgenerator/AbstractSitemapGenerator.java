@@ -3,138 +3,1078 @@ package cz.jiripinkas.jsitemapgenerator;
 import cz.jiripinkas.jsitemapgenerator.exception.InvalidPriorityException;
 import cz.jiripinkas.jsitemapgenerator.exception.InvalidUrlException;
 import cz.jiripinkas.jsitemapgenerator.exception.WebmasterToolsException;
+import cz.jiripinkas.jsitemapgenerator.store.PageRecordStore;
 
 import java.io.*;
 import java.lang.reflect.Method;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 public abstract class AbstractSitemapGenerator<T extends AbstractGenerator> extends AbstractGenerator<T> {
 
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
     protected W3CDateFormat dateFormat = new W3CDateFormat();
 
     private ChangeFreq defaultChangeFreq;
 
-    private Double defaultPriority;
+    private Double defaultPriority;
+
+    private String defaultDir;
+
+    private String defaultExtension;
+
+    private Date defaultLastMod;
+
+    private int gzipLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private Executor gzipExecutor;
+
+    private int gzipBlockSize;
+
+    private Executor renderExecutor;
+
+    private int renderChunkSize;
+
+    private boolean atomicFileOutput;
+
+    private boolean forceFileOutput;
+
+    private boolean cacheOutput;
+
+    private volatile CachedOutput cachedOutput;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Map<PageKey, byte[]> fragmentCache;
+
+    private volatile LastModCache lastModCache;
+
+    private HttpClient httpClient;
+
+    public AbstractSitemapGenerator(String baseUrl) {
+        super(baseUrl);
+        httpClient = new HttpClient();
+    }
+
+    public abstract String[] toStringArray();
+
+    /**
+     * Write sitemap into writer. Generators override this method to write
+     * sitemap entries one by one, default implementation writes toStringArray().
+     *
+     * @param writer Writer
+     * @throws IOException when error
+     */
+    protected void writeSitemap(Writer writer) throws IOException {
+        for (String line : toStringArray()) {
+            writer.write(line);
+        }
+    }
+
+    /**
+     * Construct sitemap into String
+     *
+     * @return sitemap
+     */
+    public String toString() {
+        if (cacheOutput) {
+            return new String(getCachedOutput().bytes, StandardCharsets.UTF_8);
+        }
+        StringWriter writer = new StringWriter();
+        try {
+            writeSitemap(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Construct sitemap and write it into writer. Sitemap entries are written one by one,
+     * so whole sitemap is never stored in memory. Writer isn't flushed nor closed.
+     *
+     * @param writer Writer
+     * @return this
+     * @throws IOException when error
+     */
+    public T writeTo(Writer writer) throws IOException {
+        if (cacheOutput) {
+            Utf8Writer.writeUtf8(writer, getCachedOutput().bytes);
+            return getThis();
+        }
+        writeSitemap(writer);
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap and write it into output stream (in UTF-8). Sitemap entries are written one by one
+     * through a buffer, so whole sitemap is never stored in memory. Output stream is flushed, but isn't closed.
+     *
+     * @param outputStream Output stream
+     * @return this
+     * @throws IOException when error
+     */
+    public T writeTo(OutputStream outputStream) throws IOException {
+        if (cacheOutput) {
+            outputStream.write(getCachedOutput().bytes);
+            outputStream.flush();
+            return getThis();
+        }
+        Writer writer = new Utf8Writer(outputStream, BUFFER_SIZE);
+        writeSitemap(writer);
+        writer.flush();
+        return getThis();
+    }
+
+    /**
+     * Write entries (for example urls of sitemap) into writer in the order of the list.
+     * If parallel rendering is enabled (see {@link #parallelRendering(Executor, int)}), list is split into chunks,
+     * each chunk is rendered into its own buffer in executor and buffers are written into writer in the original order,
+     * so the output is the same as if entries were written one by one.
+     *
+     * @param writer      Writer
+     * @param entries     Entries
+     * @param entryWriter Function which writes single entry
+     * @param <E>         Type of entry
+     * @throws IOException when error
+     */
+    protected <E> void writeEntries(Writer writer, List<E> entries, EntryWriter<E> entryWriter) throws IOException {
+        if (renderExecutor == null || entries.size() <= renderChunkSize) {
+            for (E entry : entries) {
+                checkInterrupted();
+                entryWriter.write(writer, entry);
+            }
+            return;
+        }
+        int chunkCount = (entries.size() + renderChunkSize - 1) / renderChunkSize;
+        // only limited number of chunks is rendered ahead, so memory is bounded
+        int maxChunksAhead = 2 * (renderExecutor instanceof ForkJoinPool
+                ? ((ForkJoinPool) renderExecutor).getParallelism()
+                : Runtime.getRuntime().availableProcessors());
+        Deque<CompletableFuture<ByteArrayOutputStream>> chunks = new ArrayDeque<>();
+        int nextChunk = 0;
+        try {
+            while (nextChunk < chunkCount || !chunks.isEmpty()) {
+                while (nextChunk < chunkCount && chunks.size() < maxChunksAhead) {
+                    List<E> chunk = entries.subList(nextChunk * renderChunkSize, Math.min(entries.size(), (nextChunk + 1) * renderChunkSize));
+                    chunks.add(CompletableFuture.supplyAsync(() -> renderChunk(chunk, entryWriter), renderExecutor));
+                    nextChunk++;
+                }
+                checkInterrupted();
+                Utf8Writer.writeUtf8(writer, joinChunk(chunks.removeFirst()));
+            }
+        } finally {
+            chunks.forEach(chunk -> chunk.cancel(false));
+        }
+    }
+
+    /**
+     * Write pages into writer, see {@link #writeEntries(Writer, List, EntryWriter)}.
+     * If fragment cache is enabled (see {@link #cacheFragments()}), every page is rendered only once
+     * and cached UTF-8 bytes are written next time.
+     *
+     * @param writer     Writer
+     * @param webPages   Pages
+     * @param pageWriter Function which writes single page
+     * @throws IOException when error
+     */
+    protected void writePages(Writer writer, List<WebPage> webPages, EntryWriter<WebPage> pageWriter) throws IOException {
+        if (fragmentCache == null) {
+            writeEntries(writer, webPages, pageWriter);
+        } else {
+            writeEntries(writer, webPages, (entryWriter, webPage) -> Utf8Writer.writeUtf8(entryWriter, renderFragment(webPage, pageWriter)));
+        }
+    }
+
+    /**
+     * Render single page into UTF-8 bytes. If fragment cache is enabled (see {@link #cacheFragments()}),
+     * cached bytes are returned when page was already rendered. Pages of {@link PageRecordStore} aren't cached,
+     * because it creates new WebPage objects on every rendering.
+     *
+     * @param webPage    WebPage
+     * @param pageWriter Function which writes single page
+     * @return UTF-8 bytes
+     * @throws IOException when error
+     */
+    protected byte[] renderFragment(WebPage webPage, EntryWriter<WebPage> pageWriter) throws IOException {
+        // cached fragment of page from record store would never be used again
+        Map<PageKey, byte[]> cache = urls instanceof PageRecordStore ? null : fragmentCache;
+        PageKey pageKey = null;
+        if (cache != null) {
+            pageKey = new PageKey(webPage);
+            byte[] fragment = cache.get(pageKey);
+            if (fragment != null) {
+                return fragment;
+            }
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+        Writer writer = new Utf8Writer(outputStream, 256);
+        pageWriter.write(writer, webPage);
+        writer.flush();
+        byte[] fragment = outputStream.toByteArray();
+        if (cache != null) {
+            cache.put(pageKey, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Cache rendered pages. Every page is rendered into UTF-8 bytes only once and rendering of sitemap
+     * mostly copies cached bytes. Page is rendered again only when it's added again (or replaced by page with the same URL).
+     * Changes of WebPage objects which were already added aren't detected.
+     * Unlike {@link #cacheOutput()} this helps also when some pages change between renderings.
+     * Fragment cache isn't used with {@link PageRecordStore}, which doesn't keep WebPage objects.
+     *
+     * @return this
+     */
+    public T cacheFragments() {
+        if (fragmentCache == null) {
+            fragmentCache = new ConcurrentHashMap<>();
+        }
+        return getThis();
+    }
+
+    /**
+     * Number of cached fragments, 0 when fragment cache is disabled
+     *
+     * @return Number of cached fragments
+     */
+    int getFragmentCacheSize() {
+        Map<PageKey, byte[]> cache = fragmentCache;
+        return cache != null ? cache.size() : 0;
+    }
+
+    /**
+     * Reset fragment cache, pages will be rendered on every call
+     *
+     * @return this
+     */
+    public T resetCacheFragments() {
+        fragmentCache = null;
+        return getThis();
+    }
+
+    /**
+     * Cache rendered lastmod elements, see {@link #cacheLastMod(int)}. Default capacity is {@link LastModCache#DEFAULT_CAPACITY}.
+     *
+     * @return this
+     */
+    public T cacheLastMod() {
+        return cacheLastMod(LastModCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Cache rendered lastmod elements by timestamp. This helps when many pages share the same lastMod
+     * (for example default lastMod), every timestamp is formatted only once while it stays in cache.
+     * Statistics of cache are available via {@link #getLastModCache()}.
+     * Cache is replaced (and its statistics are reset) when time zone of dateFormat is changed.
+     *
+     * @param capacity Max. number of cached timestamps
+     * @return this
+     */
+    public T cacheLastMod(int capacity) {
+        lastModCache = new LastModCache(dateFormat.toFormatter(), capacity);
+        return getThis();
+    }
+
+    /**
+     * Reset lastmod cache, dates will be formatted for every page
+     *
+     * @return this
+     */
+    public T resetCacheLastMod() {
+        lastModCache = null;
+        return getThis();
+    }
+
+    /**
+     * Get lastmod cache with its hit rate statistics
+     *
+     * @return Cache or null if it isn't enabled (see {@link #cacheLastMod(int)})
+     */
+    public LastModCache getLastModCache() {
+        LastModCache cache = lastModCache;
+        if (cache != null && cache.getFormatter() != dateFormat.toFormatter()) {
+            cache = new LastModCache(dateFormat.toFormatter(), cache.getCapacity());
+            lastModCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Append lastmod element ("&lt;lastmod&gt;date&lt;/lastmod&gt;\n") to builder, see {@link #cacheLastMod(int)}
+     *
+     * @param builder Builder
+     * @param lastMod Last modification date
+     * @return builder
+     */
+    protected StringBuilder appendLastMod(StringBuilder builder, Date lastMod) {
+        LastModCache cache = getLastModCache();
+        if (cache != null) {
+            return builder.append(cache.get(lastMod.getTime()));
+        }
+        return builder.append("<lastmod>").append(formatDate(lastMod)).append("</lastmod>\n");
+    }
+
+    /**
+     * Write lastmod element ("&lt;lastmod&gt;date&lt;/lastmod&gt;\n") into writer, see {@link #cacheLastMod(int)}
+     *
+     * @param writer      Writer
+     * @param epochMillis Last modification date in milliseconds since epoch
+     * @throws IOException when error
+     */
+    protected void writeLastMod(Writer writer, long epochMillis) throws IOException {
+        LastModCache cache = getLastModCache();
+        if (cache != null) {
+            Utf8Writer.writeUtf8(writer, cache.getUtf8(epochMillis));
+            return;
+        }
+        writer.write("<lastmod>");
+        writer.write(formatDate(new Date(epochMillis)));
+        writer.write("</lastmod>\n");
+    }
+
+    /**
+     * WebPage overrides equals(), but cached fragment belongs to concrete WebPage object
+     */
+    private static final class PageKey {
+
+        private final WebPage webPage;
+
+        private PageKey(WebPage webPage) {
+            this.webPage = webPage;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PageKey && ((PageKey) o).webPage == webPage;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(webPage);
+        }
+
+    }
+
+    private <E> ByteArrayOutputStream renderChunk(List<E> chunk, EntryWriter<E> entryWriter) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Writer writer = new Utf8Writer(outputStream)) {
+            for (E entry : chunk) {
+                entryWriter.write(writer, entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream;
+    }
+
+    private static ByteArrayOutputStream joinChunk(CompletableFuture<ByteArrayOutputStream> chunk) throws IOException {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes single entry (for example url of sitemap) into writer
+     *
+     * @param <E> Type of entry
+     */
+    protected interface EntryWriter<E> {
+        void write(Writer writer, E entry) throws IOException;
+    }
+
+    /**
+     * Format date using W3C date format (pattern and time zone of dateFormat).
+     * Unlike dateFormat this method can be called from multiple threads during parallel rendering.
+     *
+     * @param date Date
+     * @return Formatted date
+     */
+    protected String formatDate(Date date) {
+        return dateFormat.toFormatter().format(date);
+    }
+
+    /**
+     * Render sitemap in parallel using common ForkJoinPool, see {@link #parallelRendering(Executor, int)}
+     *
+     * @param chunkSize Number of entries rendered in one task
+     * @return this
+     */
+    public T parallelRendering(int chunkSize) {
+        return parallelRendering(ForkJoinPool.commonPool(), chunkSize);
+    }
+
+    /**
+     * Render sitemap in parallel. Sorted pages are split into chunks of chunkSize entries,
+     * chunks are rendered in executor and written in order, so the output is the same as in sequential rendering.
+     *
+     * @param executor  Executor which renders chunks
+     * @param chunkSize Number of entries rendered in one task
+     * @return this
+     */
+    public T parallelRendering(Executor executor, int chunkSize) {
+        Objects.requireNonNull(executor);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        renderExecutor = executor;
+        renderChunkSize = chunkSize;
+        return getThis();
+    }
+
+    /**
+     * Reset parallel rendering, sitemap will be rendered in calling thread
+     *
+     * @return this
+     */
+    public T resetParallelRendering() {
+        renderExecutor = null;
+        renderChunkSize = 0;
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap into String which is consumed by supplied Consumer
+     *
+     * @param stringConsumer Consumer which consumes generated String
+     * @return this
+     */
+    public T toString(Consumer<String> stringConsumer) {
+        stringConsumer.accept(toString());
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap into prettified String
+     *
+     * @param indent Indentation
+     * @return sitemap
+     */
+    public String toPrettyString(int indent) {
+        StringWriter stringWriter = new StringWriter();
+        try {
+            writePrettyTo(stringWriter, indent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Construct sitemap and write it prettified into writer. Indentation is added while sitemap is written
+     * (sitemap isn't parsed), output is same as output of {@link #toPrettyString(int)}. Writer isn't flushed nor closed.
+     *
+     * @param writer Writer
+     * @param indent Indentation
+     * @return this
+     * @throws IOException when error
+     */
+    public T writePrettyTo(Writer writer, int indent) throws IOException {
+        writeSitemap(new PrettyXmlWriter(writer, indent));
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap and write it prettified into output stream (in UTF-8).
+     * Output stream is flushed, but isn't closed.
+     *
+     * @param outputStream Output stream
+     * @param indent       Indentation
+     * @return this
+     * @throws IOException when error
+     */
+    public T writePrettyTo(OutputStream outputStream, int indent) throws IOException {
+        Writer writer = new Utf8Writer(outputStream, BUFFER_SIZE);
+        writeSitemap(new PrettyXmlWriter(writer, indent));
+        writer.flush();
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap into prettified String which is consumed by supplied Consumer
+     *
+     * @param indent         Indentation
+     * @param stringConsumer Consumer which consumes generated String
+     * @return this
+     */
+    public T toPrettyString(int indent, Consumer<String> stringConsumer) {
+        stringConsumer.accept(toPrettyString(indent));
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap into gzipped file
+     *
+     * @return byte array
+     */
+    public byte[] toGzipByteArray() {
+        if (cacheOutput) {
+            return getCachedGzipOutput().gzipBytes.clone();
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeGzipTo(outputStream);
+        } catch (IOException ex) {
+            throw new RuntimeException("Cannot perform gzip", ex);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Construct sitemap into gzipped byte array which is consumed by supplied Consumer
+     *
+     * @param byteArrayConsumer Consumer which consumes generated byte array
+     * @return this
+     */
+    public T toGzipByteArray(Consumer<byte[]> byteArrayConsumer) {
+        byteArrayConsumer.accept(toGzipByteArray());
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap and write it gzipped into output stream. Sitemap is compressed while it's being written,
+     * so neither whole sitemap nor whole gzipped sitemap is stored in memory.
+     * Output stream isn't closed.
+     *
+     * @param outputStream Output stream
+     * @return this
+     * @throws IOException when error
+     */
+    public T writeGzipTo(OutputStream outputStream) throws IOException {
+        if (cacheOutput) {
+            outputStream.write(getCachedGzipOutput().gzipBytes);
+            outputStream.flush();
+            return getThis();
+        }
+        // closing gzip stream finishes it, but output stream must stay open
+        try (OutputStream gzipOutputStream = newGzipOutputStream(new NonClosingOutputStream(outputStream))) {
+            writeTo(gzipOutputStream);
+        }
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap and write it gzipped into channel, see {@link #writeGzipTo(OutputStream)}.
+     * Channel isn't closed.
+     *
+     * @param channel Channel
+     * @return this
+     * @throws IOException when error
+     */
+    public T writeGzipTo(WritableByteChannel channel) throws IOException {
+        return writeGzipTo(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Construct and save gzipped sitemap to output file
+     *
+     * @param file Output file
+     * @return this
+     * @throws IOException when error
+     */
+    public T toGzipFile(File file) throws IOException {
+        writeFile(file, outputStream -> writeGzipTo(outputStream));
+        return getThis();
+    }
+
+    /**
+     * Construct and save gzipped sitemap to output file
+     *
+     * @param path Output file
+     * @return this
+     * @throws IOException when error
+     */
+    public T toGzipFile(Path path) throws IOException {
+        return toGzipFile(path.toFile());
+    }
+
+    /**
+     * Sets compression level used for gzip output
+     *
+     * @param level Compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}
+     * @return this
+     */
+    public T gzipLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Gzip level must be between 0 and 9");
+        }
+        gzipLevel = level;
+        invalidateOutputCache();
+        return getThis();
+    }
+
+    /**
+     * Compress gzip output in parallel using common ForkJoinPool, see {@link #parallelGzip(Executor, int)}
+     *
+     * @param blockSize Size of uncompressed block
+     * @return this
+     */
+    public T parallelGzip(int blockSize) {
+        return parallelGzip(ForkJoinPool.commonPool(), blockSize);
+    }
+
+    /**
+     * Compress gzip output in parallel. Sitemap is split into blocks of blockSize bytes,
+     * blocks are compressed in executor and written as concatenated gzip members (see {@link ParallelGzipOutputStream}).
+     * Larger blocks give better compression ratio, 1 MB is a good default.
+     *
+     * @param executor  Executor which compresses blocks
+     * @param blockSize Size of uncompressed block
+     * @return this
+     */
+    public T parallelGzip(Executor executor, int blockSize) {
+        Objects.requireNonNull(executor);
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        gzipExecutor = executor;
+        gzipBlockSize = blockSize;
+        invalidateOutputCache();
+        return getThis();
+    }
+
+    /**
+     * Reset parallel gzip, gzip output will be compressed in calling thread
+     *
+     * @return this
+     */
+    public T resetParallelGzip() {
+        gzipExecutor = null;
+        gzipBlockSize = 0;
+        invalidateOutputCache();
+        return getThis();
+    }
+
+    /**
+     * Cache rendered sitemap. Sitemap is rendered (and gzipped) only once, subsequent calls
+     * of toString(), writeTo(), toByteArray(), toGzipByteArray(), writeGzipTo(), toFile() and toGzipFile()
+     * only copy cached bytes. Cache is invalidated when page is added or when gzip settings change.
+     * Changes of WebPage objects which were already added aren't detected.
+     * Cached output can be read from multiple threads.
+     *
+     * @return this
+     */
+    public T cacheOutput() {
+        cacheOutput = true;
+        return getThis();
+    }
+
+    /**
+     * Reset output cache, sitemap will be rendered on every call
+     *
+     * @return this
+     */
+    public T resetCacheOutput() {
+        cacheOutput = false;
+        invalidateOutputCache();
+        return getThis();
+    }
+
+    /**
+     * Construct sitemap into byte array (in UTF-8)
+     *
+     * @return byte array
+     */
+    public byte[] toByteArray() {
+        if (cacheOutput) {
+            return getCachedOutput().bytes.clone();
+        }
+        return render();
+    }
+
+    /**
+     * Strong ETag of sitemap (HTTP entity tag including quotes), which changes whenever sitemap changes.
+     * It's computed from content of sitemap, so it's cached when output is cached (see {@link #cacheOutput()}).
+     *
+     * @return ETag
+     */
+    public String getETag() {
+        if (cacheOutput) {
+            return getCachedOutput().eTag;
+        }
+        return eTag(render());
+    }
+
+    /**
+     * Strong ETag of gzipped sitemap (HTTP entity tag including quotes), see {@link #getETag()}.
+     * It's computed from gzipped content, so it's different from ETag of uncompressed sitemap
+     * and it also changes when gzip settings change.
+     *
+     * @return ETag
+     */
+    public String getGzipETag() {
+        if (cacheOutput) {
+            return getCachedGzipOutput().gzipETag;
+        }
+        return eTag(toGzipByteArray());
+    }
+
+    /**
+     * Invalidate cached output, next call will render sitemap again
+     */
+    protected void invalidateOutputCache() {
+        version.incrementAndGet();
+        cachedOutput = null;
+    }
 
-    private String defaultDir;
+    @Override
+    protected void afterAddPageEvent(WebPage webPage, WebPage replacedWebPage) {
+        invalidateOutputCache();
+        Map<PageKey, byte[]> cache = fragmentCache;
+        if (cache != null) {
+            // page could be changed before it was added again
+            cache.remove(new PageKey(webPage));
+            if (replacedWebPage != null) {
+                cache.remove(new PageKey(replacedWebPage));
+            }
+        }
+    }
 
-    private String defaultExtension;
+    private byte[] render() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            Writer writer = new Utf8Writer(outputStream, BUFFER_SIZE);
+            writeSitemap(writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return outputStream.toByteArray();
+    }
 
-    private Date defaultLastMod;
+    private CachedOutput getCachedOutput() {
+        CachedOutput output = cachedOutput;
+        // output is valid only for version for which it was rendered, so output which was rendered
+        // while pages changed is never returned, even if it's cached after cache was invalidated
+        if (output == null || output.version != version.get()) {
+            // resolving deferred pages changes version
+            resolveDeferredPages();
+            output = new CachedOutput(version.get(), render());
+            cachedOutput = output;
+        }
+        return output;
+    }
 
-    private HttpClient httpClient;
+    private CachedOutput getCachedGzipOutput() {
+        CachedOutput output = getCachedOutput();
+        if (output.gzipBytes == null) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(output.bytes.length / 8 + 64);
+            try (OutputStream gzipOutputStream = newGzipOutputStream(outputStream)) {
+                gzipOutputStream.write(output.bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            byte[] gzipBytes = outputStream.toByteArray();
+            // ETag is set first, so it's always set when gzipBytes are set
+            output.gzipETag = eTag(gzipBytes);
+            output.gzipBytes = gzipBytes;
+        }
+        return output;
+    }
 
-    public AbstractSitemapGenerator(String baseUrl) {
-        super(baseUrl);
-        httpClient = new HttpClient();
+    /**
+     * Construct strong ETag from SHA-256 of content
+     */
+    private static String eTag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder builder = new StringBuilder(2 + digest.length * 2).append('"');
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 
-    public abstract String[] toStringArray();
+    /**
+     * Rendered sitemap together with version of pages, its ETag and lazily gzipped bytes
+     */
+    private static class CachedOutput {
+
+        private final long version;
+
+        private final byte[] bytes;
+
+        private final String eTag;
+
+        private volatile String gzipETag;
+
+        private volatile byte[] gzipBytes;
+
+        private CachedOutput(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+            this.eTag = eTag(bytes);
+        }
+
+    }
 
     /**
-     * Construct sitemap into String
+     * Create gzip output stream with compression level set by {@link #gzipLevel(int)}.
+     * If parallel gzip is enabled, {@link ParallelGzipOutputStream} is returned.
+     * Closing returned stream finishes gzip and closes output stream.
      *
-     * @return sitemap
+     * @param outputStream Output stream
+     * @return Gzip output stream
+     * @throws IOException when error
      */
-    public String toString() {
-        String[] sitemapArray = toStringArray();
-        StringBuilder result = new StringBuilder();
-        for (String line : sitemapArray) {
-            result.append(line);
+    protected OutputStream newGzipOutputStream(OutputStream outputStream) throws IOException {
+        int level = gzipLevel;
+        if (gzipExecutor != null) {
+            return new ParallelGzipOutputStream(outputStream, gzipExecutor, gzipBlockSize, level);
         }
-        return result.toString();
+        return new GZIPOutputStream(outputStream, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
     }
 
     /**
-     * Construct sitemap into String which is consumed by supplied Consumer
+     * Output stream which doesn't close underlying output stream, only flushes it
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+
+    }
+
+    /**
+     * Construct and save sitemap to output file
      *
-     * @param stringConsumer Consumer which consumes generated String
+     * @param file Output file
      * @return this
+     * @throws IOException when error
      */
-    public T toString(Consumer<String> stringConsumer) {
-        stringConsumer.accept(toString());
+    public T toFile(File file) throws IOException {
+        writeFile(file, outputStream -> writeTo(outputStream));
         return getThis();
     }
 
     /**
-     * Construct sitemap into prettified String
+     * Write file using supplied content writer. If atomic file output is enabled
+     * (see {@link #atomicFileOutput(boolean)}), content is written into temporary file
+     * in the same directory, which is then atomically moved to the target file.
      *
-     * @param indent Indentation
-     * @return sitemap
+     * @param file          Output file
+     * @param contentWriter Function which writes content of file
+     * @throws IOException when error
      */
-    public String toPrettyString(int indent) {
-        return toPrettyXmlString(toString(), indent).replace("\r\n", "\n");
+    protected void writeFile(File file, FileContentWriter contentWriter) throws IOException {
+        prepareFile(file);
+        if (!atomicFileOutput) {
+            try (OutputStream outputStream = new FileOutputStream(file)) {
+                contentWriter.write(outputStream);
+            }
+            return;
+        }
+        Path path = file.toPath();
+        // hidden sibling file, so it's on the same file system and it's not served while it's written
+        Path tempPath = path.resolveSibling("." + path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream outputStream = newFileOutputStream(tempPath, StandardOpenOption.CREATE_NEW)) {
+                contentWriter.write(outputStream);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        if (forceFileOutput) {
+            forceDirectory(path.toAbsolutePath().getParent());
+        }
     }
 
     /**
-     * Construct sitemap into prettified String which is consumed by supplied Consumer
+     * Open output stream which writes into file through FileChannel. If file output is forced
+     * (see {@link #atomicFileOutput(boolean)}), content is forced to storage device when output stream is closed.
+     * Output stream isn't buffered.
      *
-     * @param indent         Indentation
-     * @param stringConsumer Consumer which consumes generated String
-     * @return this
+     * @param path    File
+     * @param options Additional open options
+     * @return Output stream
+     * @throws IOException when error
      */
-    public T toPrettyString(int indent, Consumer<String> stringConsumer) {
-        stringConsumer.accept(toPrettyString(indent));
-        return getThis();
+    protected OutputStream newFileOutputStream(Path path, StandardOpenOption... options) throws IOException {
+        Set<StandardOpenOption> openOptions = EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        openOptions.addAll(Arrays.asList(options));
+        return new FileChannelOutputStream(FileChannel.open(path, openOptions), forceFileOutput);
     }
 
-    private ByteArrayOutputStream gzipIt(InputStream inputStream) {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-        try {
-            try (GZIPOutputStream gzos = new GZIPOutputStream(outputStream);
-                 InputStream in = inputStream) {
-                int len;
-                while ((len = in.read(buffer)) > 0) {
-                    gzos.write(buffer, 0, len);
+    /**
+     * Force directory entries (for example of renamed file) to storage device.
+     * It's not supported on all platforms, in that case it's ignored.
+     *
+     * @param directory Directory
+     */
+    protected static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported (for example on Windows)
+        }
+    }
+
+    /**
+     * Function which writes content of file into output stream
+     */
+    protected interface FileContentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Output stream which writes into FileChannel and optionally forces content to storage device on close
+     */
+    private static class FileChannelOutputStream extends OutputStream {
+
+        private final FileChannel channel;
+
+        private final boolean force;
+
+        private FileChannelOutputStream(FileChannel channel, boolean force) {
+            this.channel = channel;
+            this.force = force;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                if (force) {
+                    channel.force(true);
                 }
+            } finally {
+                channel.close();
             }
-        } catch (IOException ex) {
-            throw new RuntimeException("Cannot perform gzip", ex);
         }
-        return outputStream;
+
     }
 
     /**
-     * Construct sitemap into gzipped file
+     * Files will be written atomically: content is written into temporary file in the same directory,
+     * which is atomically moved to the target file when it's complete. Readers of the file
+     * (for example web server) never see partially written file. Sharded output
+     * (see {@link cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator#toShardedFiles(cz.jiripinkas.jsitemapgenerator.generator.Sharding)})
+     * is written into temporary directory which replaces the whole output directory, for a moment between
+     * moving old directory aside and moving new one to its place the output directory doesn't exist.
      *
-     * @return byte array
+     * @param force If true, content of files is forced to storage device before they're moved,
+     *              so after crash there is either old or complete new file
+     * @return this
      */
-    public byte[] toGzipByteArray() {
-        String sitemap = this.toString();
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(sitemap.getBytes(StandardCharsets.UTF_8));
-        ByteArrayOutputStream outputStream = gzipIt(inputStream);
-        return outputStream.toByteArray();
+    public T atomicFileOutput(boolean force) {
+        atomicFileOutput = true;
+        forceFileOutput = force;
+        return getThis();
     }
 
     /**
-     * Construct sitemap into gzipped byte array which is consumed by supplied Consumer
+     * Files will be written atomically, see {@link #atomicFileOutput(boolean)}. Content isn't forced to storage device.
      *
-     * @param byteArrayConsumer Consumer which consumes generated byte array
      * @return this
      */
-    public T toGzipByteArray(Consumer<byte[]> byteArrayConsumer) {
-        byteArrayConsumer.accept(toGzipByteArray());
-        return getThis();
+    public T atomicFileOutput() {
+        return atomicFileOutput(false);
     }
 
     /**
-     * Construct and save sitemap to output file
+     * Reset atomic file output, files will be written in place
      *
-     * @param file Output file
      * @return this
-     * @throws IOException when error
      */
-    public T toFile(File file) throws IOException {
+    public T resetAtomicFileOutput() {
+        atomicFileOutput = false;
+        forceFileOutput = false;
+        return getThis();
+    }
+
+    protected boolean isAtomicFileOutput() {
+        return atomicFileOutput;
+    }
+
+    protected boolean isForceFileOutput() {
+        return forceFileOutput;
+    }
+
+    private void prepareFile(File file) throws IOException {
         if (file.exists()) {
             if (file.isDirectory()) {
                 throw new IOException("File '" + file + "' exists but is a directory");
@@ -148,13 +1088,6 @@ public abstract class AbstractSitemapGenerator<T extends AbstractGenerator> exte
                 throw new IOException("Directory '" + parent + "' could not be created");
             }
         }
-        String[] sitemap = toStringArray();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            for (String string : sitemap) {
-                writer.write(string);
-            }
-        }
-        return getThis();
     }
 
     /**
@@ -203,6 +1136,203 @@ public abstract class AbstractSitemapGenerator<T extends AbstractGenerator> exte
         return toFile(new File(parent, child));
     }
 
+    /**
+     * Throw InterruptedIOException if current thread was interrupted, so rendering
+     * of cancelled async operation (see {@link #toFileAsync(Path, Executor)}) stops.
+     *
+     * @throws InterruptedIOException when current thread was interrupted
+     */
+    protected static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Sitemap generation was interrupted");
+        }
+    }
+
+    /**
+     * Construct sitemap into String asynchronously using default executor, see {@link #toStringAsync(Executor)}
+     *
+     * @return Future with sitemap
+     */
+    public CompletableFuture<String> toStringAsync() {
+        return toStringAsync(getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Construct sitemap into String asynchronously. Generator must not be modified until returned future completes.
+     * Cancelling the future interrupts generation.
+     *
+     * @param executor Executor which constructs sitemap
+     * @return Future with sitemap
+     */
+    public CompletableFuture<String> toStringAsync(Executor executor) {
+        return async(executor, this::toString);
+    }
+
+    /**
+     * Construct sitemap into gzipped byte array asynchronously using default executor, see {@link #toGzipByteArrayAsync(Executor)}
+     *
+     * @return Future with gzipped sitemap
+     */
+    public CompletableFuture<byte[]> toGzipByteArrayAsync() {
+        return toGzipByteArrayAsync(getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Construct sitemap into gzipped byte array asynchronously. Generator must not be modified until returned future completes.
+     * Cancelling the future interrupts generation.
+     *
+     * @param executor Executor which constructs sitemap
+     * @return Future with gzipped sitemap
+     */
+    public CompletableFuture<byte[]> toGzipByteArrayAsync(Executor executor) {
+        return async(executor, this::toGzipByteArray);
+    }
+
+    /**
+     * Construct and save sitemap to output file asynchronously using default executor, see {@link #toFileAsync(Path, Executor)}
+     *
+     * @param path Output file
+     * @return Future which completes when file is written
+     */
+    public CompletableFuture<T> toFileAsync(Path path) {
+        return toFileAsync(path, getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Construct and save sitemap to output file asynchronously. Generator must not be modified until returned future completes.
+     * Cancelling the future interrupts generation, use {@link #atomicFileOutput()} so that partially written file
+     * doesn't replace the previous one.
+     *
+     * @param path     Output file
+     * @param executor Executor which constructs sitemap
+     * @return Future which completes when file is written
+     */
+    public CompletableFuture<T> toFileAsync(Path path, Executor executor) {
+        return async(executor, () -> toFile(path));
+    }
+
+    /**
+     * Construct and save gzipped sitemap to output file asynchronously using default executor,
+     * see {@link #toGzipFileAsync(Path, Executor)}
+     *
+     * @param path Output file
+     * @return Future which completes when file is written
+     */
+    public CompletableFuture<T> toGzipFileAsync(Path path) {
+        return toGzipFileAsync(path, getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Construct and save gzipped sitemap to output file asynchronously, see {@link #toFileAsync(Path, Executor)}
+     *
+     * @param path     Output file
+     * @param executor Executor which constructs sitemap
+     * @return Future which completes when file is written
+     */
+    public CompletableFuture<T> toGzipFileAsync(Path path, Executor executor) {
+        return async(executor, () -> toGzipFile(path));
+    }
+
+    /**
+     * Ping search engine(s) asynchronously using default executor, see {@link #pingAsync(Ping, Executor)}
+     *
+     * @param ping Ping object
+     * @return Future with ping response
+     */
+    public CompletableFuture<PingResponse> pingAsync(Ping ping) {
+        return pingAsync(ping, getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Ping search engine(s) asynchronously, see {@link #ping(Ping)}
+     *
+     * @param ping     Ping object
+     * @param executor Executor which pings search engines
+     * @return Future with ping response
+     */
+    public CompletableFuture<PingResponse> pingAsync(Ping ping, Executor executor) {
+        return async(executor, () -> ping(ping));
+    }
+
+    /**
+     * Publisher of sitemap (in UTF-8) which renders sitemap using default executor, see {@link #toPublisher(Executor)}
+     *
+     * @return Publisher of sitemap chunks
+     */
+    public Flow.Publisher<ByteBuffer> toPublisher() {
+        return toPublisher(getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Publisher of sitemap (in UTF-8). Every subscriber gets its own rendering of sitemap, which runs in executor.
+     * Sitemap is published in chunks while it's rendered and rendering waits until subscriber requests next chunk,
+     * so memory usage doesn't depend on size of sitemap. Generator must not be modified while sitemap is published.
+     *
+     * @param executor Executor which renders sitemap (its thread waits for subscriber demand)
+     * @return Publisher of sitemap chunks
+     */
+    public Flow.Publisher<ByteBuffer> toPublisher(Executor executor) {
+        return new OutputStreamPublisher(outputStream -> writeTo(outputStream), executor, BUFFER_SIZE);
+    }
+
+    /**
+     * Publisher of gzipped sitemap which renders sitemap using default executor, see {@link #toGzipPublisher(Executor)}
+     *
+     * @return Publisher of gzipped sitemap chunks
+     */
+    public Flow.Publisher<ByteBuffer> toGzipPublisher() {
+        return toGzipPublisher(getDefaultAsyncExecutor());
+    }
+
+    /**
+     * Publisher of gzipped sitemap, see {@link #toPublisher(Executor)}
+     *
+     * @param executor Executor which renders sitemap (its thread waits for subscriber demand)
+     * @return Publisher of gzipped sitemap chunks
+     */
+    public Flow.Publisher<ByteBuffer> toGzipPublisher(Executor executor) {
+        return new OutputStreamPublisher(outputStream -> writeGzipTo(outputStream), executor, BUFFER_SIZE);
+    }
+
+    /**
+     * Run task in executor. When returned future is cancelled, thread which runs the task is interrupted.
+     */
+    private static <R> CompletableFuture<R> async(Executor executor, Callable<R> task) {
+        Objects.requireNonNull(executor);
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Object lock = new Object();
+        Thread[] runner = new Thread[1];
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                synchronized (lock) {
+                    if (runner[0] != null) {
+                        runner[0].interrupt();
+                    }
+                }
+            }
+        });
+        executor.execute(() -> {
+            synchronized (lock) {
+                if (future.isDone()) {
+                    return;
+                }
+                runner[0] = Thread.currentThread();
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                synchronized (lock) {
+                    runner[0] = null;
+                }
+                // thread can be reused by executor, interrupt belonged only to this task
+                Thread.interrupted();
+            }
+        });
+        return future;
+    }
+
     /**
      * Ping search engine(s) that sitemap has changed.
      * @param ping Ping object
@@ -439,11 +1569,20 @@ public abstract class AbstractSitemapGenerator<T extends AbstractGenerator> exte
 
     @Override
     protected void beforeAddPageEvent(WebPage webPage) {
-        if (defaultDir != null && webPage.getDir() == null) {
-            webPage.setName(UrlUtil.connectUrlParts(defaultDir, webPage.constructName()));
-        }
-        if (defaultExtension != null && webPage.getExtension() == null) {
-            webPage.setName(webPage.constructName() + "." + defaultExtension);
+        boolean addDefaultDir = defaultDir != null && webPage.getDir() == null;
+        boolean addDefaultExtension = defaultExtension != null && webPage.getExtension() == null;
+        if (addDefaultDir || addDefaultExtension) {
+            // name is changed only once: "defaultDir/name.defaultExtension"
+            StringBuilder name = new StringBuilder();
+            if (addDefaultDir) {
+                UrlUtil.connectUrlParts(name, defaultDir, webPage.constructName());
+            } else {
+                name.append(webPage.constructName());
+            }
+            if (addDefaultExtension) {
+                name.append('.').append(defaultExtension);
+            }
+            webPage.setName(name.toString());
         }
         if (defaultPriority != null && webPage.getPriority() == null) {
             webPage.setPriority(defaultPriority);
@@ -711,23 +1850,39 @@ public abstract class AbstractSitemapGenerator<T extends AbstractGenerator> exte
             webPageName = UrlUtil.escapeXmlSpecialCharacters(webPageName);
         }
         try {
-            String resultString;
-            if (webPageName != null) {
-                URI uri = new URI(webPageName);
-                String stringUrl;
-                if (uri.isAbsolute()) {
-                    stringUrl = webPageName;
-                } else {
-                    stringUrl = UrlUtil.connectUrlParts(baseUrl, webPageName);
-                }
-                resultString = stringUrl;
-            } else {
-                resultString = baseUrl;
-            }
-            return new URL(resultString).toString();
+            return absoluteUrlResolver().resolve(webPageName);
         } catch (MalformedURLException | URISyntaxException e) {
             throw new InvalidUrlException(e);
         }
     }
 
+    /**
+     * Append absolute URL with escaped special characters (see {@link #getAbsoluteUrl(String)}) to builder.
+     * Relative names which don't need parsing are appended without creating intermediate strings.
+     *
+     * @param builder     Builder
+     * @param webPageName WebPageName
+     * @return builder
+     */
+    protected StringBuilder appendAbsoluteUrl(StringBuilder builder, String webPageName) {
+        if (!absoluteUrlResolver().appendTo(builder, webPageName)) {
+            builder.append(getAbsoluteUrl(webPageName));
+        }
+        return builder;
+    }
+
+    /**
+     * Write absolute URL with escaped special characters (see {@link #getAbsoluteUrl(String)}) into writer.
+     * Relative names which don't need parsing are written without creating intermediate strings.
+     *
+     * @param writer      Writer
+     * @param webPageName WebPageName
+     * @throws IOException when error
+     */
+    protected void writeAbsoluteUrl(Writer writer, String webPageName) throws IOException {
+        if (!absoluteUrlResolver().writeTo(writer, webPageName)) {
+            writer.write(getAbsoluteUrl(webPageName));
+        }
+    }
+
 }
@@ -0,0 +1,23 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves names of many pages with one call (for example one request to slug service instead of request per page).
+ * Used by deferred names, see {@link WebPage.WebPageBuilder#deferredName(Object, BatchNameResolver)}.
+ * Resolver can be called from more threads at once.
+ *
+ * @param <K> Type of key
+ */
+public interface BatchNameResolver<K> {
+
+    /**
+     * Resolve names of keys
+     *
+     * @param keys Keys (without duplicates), at most batch size of generator
+     * @return Name of every key
+     */
+    Map<K, String> resolve(List<K> keys);
+
+}
@@ -0,0 +1,119 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Name of page which is resolved when sitemap is rendered, either by supplier or by batch resolver
+ */
+class DeferredName {
+
+    private final Supplier<String> supplier;
+
+    private final Object key;
+
+    private final BatchNameResolver<Object> resolver;
+
+    private volatile String name;
+
+    DeferredName(Supplier<String> supplier) {
+        this.supplier = supplier;
+        this.key = null;
+        this.resolver = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    <K> DeferredName(K key, BatchNameResolver<K> resolver) {
+        this.supplier = null;
+        this.key = key;
+        this.resolver = (BatchNameResolver<Object>) resolver;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private void setName(String name) {
+        if (name == null) {
+            throw new IllegalStateException("Deferred name was resolved to null" + (key != null ? ", key: " + key : ""));
+        }
+        this.name = name;
+    }
+
+    /**
+     * Resolve names in executor. Every supplier is one task, keys of batch resolver are split into batches
+     * and every batch is one task. At most maxConcurrency tasks run at once.
+     *
+     * @param deferredNames  Names
+     * @param executor       Executor
+     * @param maxConcurrency Max. number of tasks which run at once
+     * @param batchSize      Max. number of keys passed to batch resolver at once
+     */
+    static void resolve(List<DeferredName> deferredNames, Executor executor, int maxConcurrency, int batchSize) {
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        Map<BatchNameResolver<Object>, Map<Object, List<DeferredName>>> keysByResolver = new IdentityHashMap<>();
+        for (DeferredName deferredName : deferredNames) {
+            if (deferredName.supplier != null) {
+                tasks.add(() -> deferredName.setName(deferredName.supplier.get()));
+            } else {
+                keysByResolver.computeIfAbsent(deferredName.resolver, resolver -> new LinkedHashMap<>())
+                        .computeIfAbsent(deferredName.key, key -> new ArrayList<>())
+                        .add(deferredName);
+            }
+        }
+        keysByResolver.forEach((resolver, keys) -> {
+            List<Object> allKeys = new ArrayList<>(keys.keySet());
+            for (int i = 0; i < allKeys.size(); i += batchSize) {
+                List<Object> batch = allKeys.subList(i, Math.min(allKeys.size(), i + batchSize));
+                tasks.add(() -> {
+                    Map<Object, String> names = resolver.resolve(batch);
+                    for (Object key : batch) {
+                        String name = names != null ? names.get(key) : null;
+                        keys.get(key).forEach(deferredName -> deferredName.setName(name));
+                    }
+                });
+            }
+        });
+        int workers = Math.min(maxConcurrency, tasks.size());
+        if (workers == 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        // remaining tasks aren't started
+                        tasks.clear();
+                        throw e;
+                    }
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,191 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of rendered lastmod elements ("&lt;lastmod&gt;date&lt;/lastmod&gt;\n") keyed by epoch millis.
+ * It helps when many pages share few distinct lastMod values (batch imports, default lastMod of generator),
+ * every distinct value is formatted only once while it stays in cache.
+ * Cache is open-addressing hash table with fixed capacity: when all slots where value could be stored are taken,
+ * value in its first slot is replaced. This class is thread-safe.
+ */
+public final class LastModCache {
+
+    /**
+     * Default number of cached values
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Max. number of slots where value is searched for
+     */
+    private static final int MAX_PROBES = 8;
+
+    private final W3CDateFormatter formatter;
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create cache
+     *
+     * @param formatter Formatter of dates
+     * @param capacity  Max. number of cached values, it's rounded up to power of two
+     */
+    public LastModCache(W3CDateFormatter formatter, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be at most " + (1 << 30));
+        }
+        this.formatter = formatter;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public W3CDateFormatter getFormatter() {
+        return formatter;
+    }
+
+    /**
+     * Get lastmod element
+     *
+     * @param epochMillis Date in milliseconds since epoch
+     * @return "&lt;lastmod&gt;date&lt;/lastmod&gt;\n"
+     */
+    public String get(long epochMillis) {
+        return entry(epochMillis).element;
+    }
+
+    /**
+     * Get lastmod element encoded in UTF-8. Returned array is shared, it must not be modified.
+     *
+     * @param epochMillis Date in milliseconds since epoch
+     * @return "&lt;lastmod&gt;date&lt;/lastmod&gt;\n" in UTF-8
+     */
+    public byte[] getUtf8(long epochMillis) {
+        return entry(epochMillis).utf8;
+    }
+
+    private Entry entry(long epochMillis) {
+        int home = hash(epochMillis) & mask;
+        int free = -1;
+        for (int i = 0; i < MAX_PROBES && i <= mask; i++) {
+            int index = (home + i) & mask;
+            Entry entry = entries.get(index);
+            if (entry == null) {
+                // entries are never removed, value can't be in next slots
+                free = index;
+                break;
+            }
+            if (entry.epochMillis == epochMillis) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        Entry entry = new Entry(epochMillis, "<lastmod>" + formatter.format(epochMillis) + "</lastmod>\n");
+        if (free == -1) {
+            evictions.increment();
+            entries.set(home, entry);
+        } else {
+            entries.set(free, entry);
+        }
+        return entry;
+    }
+
+    private static int hash(long epochMillis) {
+        long hash = epochMillis * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Max. number of cached values
+     *
+     * @return Capacity
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of lookups which returned cached value
+     *
+     * @return Hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups which formatted date
+     *
+     * @return Misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of cached values which were replaced by other values
+     *
+     * @return Evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Ratio of hits to all lookups
+     *
+     * @return Hit rate between 0 and 1, 0 when there was no lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Reset hits, misses and evictions, cached values are kept
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Cached value, it's immutable, so it can be published without synchronization
+     */
+    private static final class Entry {
+
+        private final long epochMillis;
+
+        private final String element;
+
+        private final byte[] utf8;
+
+        private Entry(long epochMillis, String element) {
+            this.epochMillis = epochMillis;
+            this.element = element;
+            this.utf8 = element.getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * Publisher of bytes which are written into output stream by content writer.
+ * Every subscriber gets its own rendering, which runs in executor after first request.
+ * Content is split into chunks of fixed size, producer waits (blocks executor thread)
+ * until subscriber requests next chunk, so memory is bounded by chunks which subscriber didn't release yet.
+ */
+class OutputStreamPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private final ContentWriter contentWriter;
+
+    private final Executor executor;
+
+    private final int chunkSize;
+
+    /**
+     * Function which writes content into output stream
+     */
+    interface ContentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    OutputStreamPublisher(ContentWriter contentWriter, Executor executor, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.contentWriter = Objects.requireNonNull(contentWriter);
+        this.executor = Objects.requireNonNull(executor);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    /**
+     * Subscription which is also output stream into which content is written
+     */
+    private class ChunkSubscription extends OutputStream implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+        private long demand;
+
+        private boolean started;
+
+        private boolean cancelled;
+
+        private IllegalArgumentException invalidRequest;
+
+        private byte[] chunk;
+
+        private int position;
+
+        private ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean start;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    // reported by producer, so that signals to subscriber are never concurrent
+                    invalidRequest = new IllegalArgumentException("Requested number of chunks must be positive, was " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                start = !started;
+                started = true;
+                notifyAll();
+            }
+            if (start) {
+                executor.execute(this::produce);
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        private void produce() {
+            try {
+                chunk = new byte[chunkSize];
+                contentWriter.write(this);
+                emitChunk();
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                    cancelled = true;
+                }
+                subscriber.onComplete();
+            } catch (Throwable e) {
+                Throwable error;
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                    cancelled = true;
+                    error = invalidRequest != null ? invalidRequest : e;
+                }
+                subscriber.onError(error);
+            } finally {
+                chunk = null;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            chunk[position++] = (byte) b;
+            if (position == chunkSize) {
+                emitChunk();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min(len, chunkSize - position);
+                System.arraycopy(b, off, chunk, position, count);
+                position += count;
+                off += count;
+                len -= count;
+                if (position == chunkSize) {
+                    emitChunk();
+                }
+            }
+        }
+
+        private void emitChunk() throws IOException {
+            if (position == 0) {
+                return;
+            }
+            awaitDemand();
+            ByteBuffer byteBuffer = ByteBuffer.wrap(chunk, 0, position);
+            // subscriber owns emitted chunk
+            chunk = new byte[chunkSize];
+            position = 0;
+            subscriber.onNext(byteBuffer);
+        }
+
+        private synchronized void awaitDemand() throws IOException {
+            while (demand == 0 && !cancelled && invalidRequest == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Waiting for demand was interrupted");
+                }
+            }
+            if (cancelled || invalidRequest != null) {
+                // stops content writer
+                throw new InterruptedIOException("Subscription was cancelled");
+            }
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+        }
+
+    }
+
+}
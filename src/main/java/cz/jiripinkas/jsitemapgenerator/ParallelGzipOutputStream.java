@@ -0,0 +1,178 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream which compresses data in parallel. Data is split into blocks of fixed size,
+ * every block is compressed in executor into a complete gzip member and members are written
+ * in the original order. Result is a valid gzip file (gzip format allows concatenated members),
+ * which is decompressed by GZIPInputStream, gunzip and browsers / crawlers as a single stream.
+ * This class is not thread-safe.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private final OutputStream outputStream;
+
+    private final Executor executor;
+
+    private final int blockSize;
+
+    private final int level;
+
+    private final int maxBlocksAhead;
+
+    private final Deque<CompletableFuture<ByteArrayOutputStream>> blocks = new ArrayDeque<>();
+
+    private byte[] block;
+
+    private int position;
+
+    private boolean empty = true;
+
+    private boolean closed;
+
+    /**
+     * Create parallel gzip output stream
+     *
+     * @param outputStream Output stream into which compressed data is written
+     * @param executor     Executor which compresses blocks
+     * @param blockSize    Size of uncompressed block
+     * @param level        Compression level (0-9) or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION}
+     */
+    public ParallelGzipOutputStream(OutputStream outputStream, Executor executor, int blockSize, int level) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        this.outputStream = outputStream;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.level = level;
+        // only limited number of blocks is compressed ahead, so memory is bounded
+        this.maxBlocksAhead = 2 * (executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors());
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[position++] = (byte) b;
+        if (position == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int count = Math.min(len, blockSize - position);
+            System.arraycopy(b, off, block, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = position;
+        blocks.add(CompletableFuture.supplyAsync(() -> compress(data, length), executor));
+        block = new byte[blockSize];
+        position = 0;
+        empty = false;
+        while (blocks.size() > maxBlocksAhead) {
+            writeFirstBlock();
+        }
+    }
+
+    private ByteArrayOutputStream compress(byte[] data, int length) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzipOutputStream.write(data, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed;
+    }
+
+    private void writeFirstBlock() throws IOException {
+        try {
+            blocks.removeFirst().join().writeTo(outputStream);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Compress remaining data and write all compressed blocks without closing underlying output stream
+     *
+     * @throws IOException when error
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        // empty input must still produce one (empty) gzip member
+        if (position > 0 || empty) {
+            submitBlock();
+        }
+        while (!blocks.isEmpty()) {
+            writeFirstBlock();
+        }
+    }
+
+    /**
+     * Write all blocks which are already compressed. Data which wasn't compressed yet can't be flushed,
+     * because it would end the current gzip member.
+     *
+     * @throws IOException when error
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!blocks.isEmpty() && blocks.peekFirst().isDone()) {
+            writeFirstBlock();
+        }
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            closed = true;
+            blocks.forEach(future -> future.cancel(false));
+            outputStream.close();
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer which indents XML written into it and writes it into another writer.
+ * XML isn't parsed into DOM, indentation is added while tags are written, so memory usage
+ * doesn't depend on size of XML. Output is same as output of
+ * {@link AbstractGenerator#toPrettyXmlString(String, int)}: XML declaration is omitted,
+ * whitespace between tags is removed, elements which contain only text are written on single line,
+ * empty elements are written as &lt;element/&gt;, namespace declarations are written before
+ * other attributes and attributes are sorted by name.
+ * This class is not thread-safe.
+ */
+public class PrettyXmlWriter extends Writer {
+
+    private final Writer writer;
+
+    private final int indent;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private final StringBuilder tag = new StringBuilder();
+
+    private boolean inTag;
+
+    /**
+     * Start tag which wasn't written yet, because it's not known if element is empty
+     */
+    private String pendingStartTag;
+
+    /**
+     * Number of open elements (including element of pending start tag)
+     */
+    private int depth;
+
+    /**
+     * Create pretty XML writer
+     *
+     * @param writer Writer into which indented XML is written
+     * @param indent Indentation
+     */
+    public PrettyXmlWriter(Writer writer, int indent) {
+        if (indent < 0) {
+            throw new IllegalArgumentException("Indent cannot be negative");
+        }
+        this.writer = writer;
+        this.indent = indent;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(str.charAt(i));
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (!inTag) {
+            if (c == '<') {
+                inTag = true;
+                tag.append(c);
+            } else {
+                text.append(c);
+            }
+            return;
+        }
+        tag.append(c);
+        if (c == '>' && isTagComplete()) {
+            inTag = false;
+            String completeTag = tag.toString();
+            tag.setLength(0);
+            if (completeTag.startsWith("<![CDATA[")) {
+                // CDATA section is text
+                text.append(completeTag);
+            } else {
+                writeTag(completeTag);
+            }
+        }
+    }
+
+    private boolean isTagComplete() {
+        if (startsWith(tag, "<!--")) {
+            return tag.length() >= 7 && endsWith(tag, "-->");
+        }
+        if (startsWith(tag, "<![CDATA[")) {
+            return tag.length() >= 12 && endsWith(tag, "]]>");
+        }
+        return true;
+    }
+
+    private void writeTag(String tag) throws IOException {
+        String content = isWhitespace(text) ? null : text.toString();
+        text.setLength(0);
+        if (tag.startsWith("<?xml") && (tag.length() == 5 || tag.charAt(5) == '?' || Character.isWhitespace(tag.charAt(5)))) {
+            // XML declaration is omitted
+            return;
+        }
+        if (tag.startsWith("</")) {
+            writeEndTag(tag, content);
+        } else if (tag.startsWith("<!") || tag.startsWith("<?")) {
+            writeNode(tag, content);
+        } else if (tag.endsWith("/>")) {
+            writeNode(normalizeStartTag(tag, true), content);
+        } else {
+            writeNode("", content);
+            pendingStartTag = normalizeStartTag(tag, false);
+            depth++;
+        }
+    }
+
+    /**
+     * Write text which precedes node and node itself on new lines
+     *
+     * @param node    Node, empty node writes only indentation (start tag is written when it's known if element is empty)
+     * @param content Text which precedes node, can be null
+     * @throws IOException when error
+     */
+    private void writeNode(String node, String content) throws IOException {
+        if (pendingStartTag != null) {
+            writer.write(pendingStartTag);
+            pendingStartTag = null;
+        }
+        if (depth == 0) {
+            // text outside of root element isn't allowed in XML, nodes outside of root element are on separate lines
+            if (!node.isEmpty()) {
+                writer.write(node);
+                writer.write('\n');
+            }
+            return;
+        }
+        if (content != null) {
+            writeIndentation(depth);
+            writer.write(normalizeText(content));
+        }
+        writeIndentation(depth);
+        writer.write(node);
+    }
+
+    private void writeEndTag(String tag, String content) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("End tag without start tag: " + tag);
+        }
+        if (pendingStartTag != null) {
+            // element contains only text or nothing
+            if (content != null) {
+                writer.write(pendingStartTag);
+                writer.write(normalizeText(content));
+                writer.write(tag);
+            } else {
+                writer.write(pendingStartTag, 0, pendingStartTag.length() - 1);
+                writer.write("/>");
+            }
+            pendingStartTag = null;
+        } else {
+            if (content != null) {
+                writeIndentation(depth);
+                writer.write(normalizeText(content));
+            }
+            writeIndentation(depth - 1);
+            writer.write(tag);
+        }
+        depth--;
+        if (depth == 0) {
+            writer.write('\n');
+        }
+    }
+
+    private void writeIndentation(int level) throws IOException {
+        writer.write('\n');
+        for (int i = 0; i < level * indent; i++) {
+            writer.write(' ');
+        }
+    }
+
+    /**
+     * Write start tag with namespace declarations first, then attributes sorted by name
+     */
+    private static String normalizeStartTag(String tag, boolean empty) {
+        int end = tag.length() - (empty ? 2 : 1);
+        int i = 1;
+        while (i < end && !Character.isWhitespace(tag.charAt(i))) {
+            i++;
+        }
+        String name = tag.substring(1, i);
+        List<String[]> namespaces = new ArrayList<>();
+        List<String[]> attributes = new ArrayList<>();
+        while (true) {
+            while (i < end && Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            if (i >= end) {
+                break;
+            }
+            int nameStart = i;
+            while (i < end && tag.charAt(i) != '=' && !Character.isWhitespace(tag.charAt(i))) {
+                i++;
+            }
+            String attributeName = tag.substring(nameStart, i);
+            while (i < end && tag.charAt(i) != '\'' && tag.charAt(i) != '"') {
+                i++;
+            }
+            if (i >= end) {
+                throw new IllegalStateException("Invalid attribute " + attributeName + " in tag " + tag);
+            }
+            char quote = tag.charAt(i++);
+            int valueStart = i;
+            while (i < end && tag.charAt(i) != quote) {
+                i++;
+            }
+            String[] attribute = {attributeName, tag.substring(valueStart, i)};
+            i++;
+            if (attributeName.equals("xmlns") || attributeName.startsWith("xmlns:")) {
+                namespaces.add(attribute);
+            } else {
+                attributes.add(attribute);
+            }
+        }
+        namespaces.sort((a, b) -> a[0].compareTo(b[0]));
+        attributes.sort((a, b) -> a[0].compareTo(b[0]));
+        StringBuilder builder = new StringBuilder(tag.length());
+        builder.append('<').append(name);
+        namespaces.addAll(attributes);
+        for (String[] attribute : namespaces) {
+            builder.append(' ').append(attribute[0]).append("=\"");
+            escape(builder, unescape(attribute[1]), true);
+            builder.append('"');
+        }
+        return builder.append(empty ? "/>" : ">").toString();
+    }
+
+    private static String normalizeText(String text) {
+        if (text.contains("<![CDATA[")) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        escape(builder, unescape(text), false);
+        return builder.toString();
+    }
+
+    private static void escape(StringBuilder builder, String value, boolean attribute) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '"':
+                    builder.append(attribute ? "&quot;" : "\"");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') == -1) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int semicolon = c == '&' ? value.indexOf(';', i) : -1;
+            if (semicolon == -1) {
+                builder.append(c);
+                i++;
+                continue;
+            }
+            String entity = value.substring(i + 1, semicolon);
+            switch (entity) {
+                case "amp":
+                    builder.append('&');
+                    break;
+                case "lt":
+                    builder.append('<');
+                    break;
+                case "gt":
+                    builder.append('>');
+                    break;
+                case "quot":
+                    builder.append('"');
+                    break;
+                case "apos":
+                    builder.append('\'');
+                    break;
+                default:
+                    if (entity.startsWith("#x")) {
+                        builder.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                    } else if (entity.startsWith("#")) {
+                        builder.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                    } else {
+                        builder.append('&').append(entity).append(';');
+                    }
+            }
+            i = semicolon + 1;
+        }
+        return builder.toString();
+    }
+
+    private static boolean isWhitespace(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(StringBuilder builder, String prefix) {
+        return builder.length() >= prefix.length() && builder.substring(0, prefix.length()).equals(prefix);
+    }
+
+    private static boolean endsWith(StringBuilder builder, String suffix) {
+        return builder.substring(builder.length() - suffix.length()).equals(suffix);
+    }
+
+    /**
+     * Flush writer. Start tag of element which may be empty is kept, because its end tag can still be written.
+     *
+     * @throws IOException when error
+     */
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (pendingStartTag != null) {
+            writer.write(pendingStartTag);
+            pendingStartTag = null;
+        }
+        writer.close();
+    }
+
+}
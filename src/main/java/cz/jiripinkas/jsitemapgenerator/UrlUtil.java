@@ -1,5 +1,9 @@
 package cz.jiripinkas.jsitemapgenerator;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
 /**
  * Util class
  */
@@ -23,20 +27,91 @@ public final class UrlUtil {
         if (urlPart2 == null) {
             return urlPart1;
         }
+        int start = indexAfterLeadingSlashes(urlPart2);
+        if (start == 0 && urlPart1.endsWith("/")) {
+            return urlPart1.concat(urlPart2);
+        }
+        return connectUrlParts(new StringBuilder(urlPart1.length() + 1 + urlPart2.length() - start), urlPart1, urlPart2).toString();
+    }
+
+    /**
+     * Connect two URL parts (see {@link #connectUrlParts(String, String)}) and append result to builder
+     *
+     * @param builder  Builder
+     * @param urlPart1 First url part
+     * @param urlPart2 Second url part
+     * @return builder
+     */
+    public static StringBuilder connectUrlParts(StringBuilder builder, String urlPart1, String urlPart2) {
+        builder.append(urlPart1);
+        if (urlPart2 == null) {
+            return builder;
+        }
         // if first part doesn't end with "/", add "/"
         if (!urlPart1.endsWith("/")) {
-            urlPart1 += "/";
+            builder.append('/');
+        }
+        // skip "/" at the beginning of second part
+        return builder.append(urlPart2, indexAfterLeadingSlashes(urlPart2), urlPart2.length());
+    }
+
+    /**
+     * Connect two URL parts (see {@link #connectUrlParts(String, String)}) and put result encoded in UTF-8 into buffer.
+     * Malformed surrogate characters are written as '?' (same as {@link String#getBytes(java.nio.charset.Charset)}).
+     *
+     * @param buffer   Buffer
+     * @param urlPart1 First url part
+     * @param urlPart2 Second url part
+     * @return buffer
+     * @throws java.nio.BufferOverflowException when there isn't enough space in buffer,
+     *                                          buffer position is then undefined
+     */
+    public static ByteBuffer connectUrlParts(ByteBuffer buffer, String urlPart1, String urlPart2) {
+        putUtf8(buffer, urlPart1, 0);
+        if (urlPart2 == null) {
+            return buffer;
+        }
+        if (!urlPart1.endsWith("/")) {
+            buffer.put((byte) '/');
+        }
+        return putUtf8(buffer, urlPart2, indexAfterLeadingSlashes(urlPart2));
+    }
+
+    private static int indexAfterLeadingSlashes(String value) {
+        int index = 0;
+        while (index < value.length() && value.charAt(index) == '/') {
+            index++;
         }
-        // if second part ends with "/", remote it
-        while (urlPart2.startsWith("/")) {
-            urlPart2 = urlPart2.substring(1);
+        return index;
+    }
+
+    private static ByteBuffer putUtf8(ByteBuffer buffer, String value, int fromIndex) {
+        for (int i = fromIndex; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
         }
-        // return "urlPart1/urlPart2"
-        return urlPart1 + urlPart2;
+        return buffer;
     }
 
     /**
-     * Escape special characters in XML
+     * Escape special characters in XML. String without special characters is returned as is.
      *
      * @param url Url to be escaped
      * @return Escaped url
@@ -45,13 +120,71 @@ public final class UrlUtil {
         if (url == null) {
             return null;
         }
-        // https://stackoverflow.com/questions/1091945/what-characters-do-i-need-to-escape-in-xml-documents
-        return url
-                .replace("&", "&amp;") // must be escaped first!!!
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;");
+        if (indexOfXmlSpecialCharacter(url, 0) == -1) {
+            return url;
+        }
+        return escapeXmlSpecialCharacters(new StringBuilder(url.length() + 16), url).toString();
+    }
+
+    /**
+     * Escape special characters in XML and append result to builder
+     *
+     * @param builder Builder
+     * @param value   Value to be escaped
+     * @return builder
+     */
+    public static StringBuilder escapeXmlSpecialCharacters(StringBuilder builder, String value) {
+        int start = 0;
+        int index;
+        while ((index = indexOfXmlSpecialCharacter(value, start)) != -1) {
+            builder.append(value, start, index).append(xmlEntity(value.charAt(index)));
+            start = index + 1;
+        }
+        return builder.append(value, start, value.length());
+    }
+
+    /**
+     * Escape special characters in XML and write result into writer
+     *
+     * @param writer Writer
+     * @param value  Value to be escaped
+     * @throws IOException when error
+     */
+    public static void escapeXmlSpecialCharacters(Writer writer, String value) throws IOException {
+        int start = 0;
+        int index;
+        while ((index = indexOfXmlSpecialCharacter(value, start)) != -1) {
+            writer.write(value, start, index - start);
+            writer.write(xmlEntity(value.charAt(index)));
+            start = index + 1;
+        }
+        writer.write(value, start, value.length() - start);
+    }
+
+    private static int indexOfXmlSpecialCharacter(String value, int fromIndex) {
+        for (int i = fromIndex; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // https://stackoverflow.com/questions/1091945/what-characters-do-i-need-to-escape-in-xml-documents
+            if (c == '&' || c == '"' || c == '\'' || c == '<' || c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String xmlEntity(char c) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&apos;";
+            case '<':
+                return "&lt;";
+            default:
+                return "&gt;";
+        }
     }
 
 }
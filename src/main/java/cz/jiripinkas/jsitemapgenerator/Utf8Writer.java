@@ -0,0 +1,190 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer which encodes characters into UTF-8 and writes them into output stream.
+ * Unlike OutputStreamWriter it can also write bytes which are already encoded in UTF-8
+ * (for example sitemap fragments rendered in advance), without decoding them back to characters.
+ * Malformed surrogate characters are written as '?' (same as {@link String#getBytes(java.nio.charset.Charset)}).
+ * This class is not thread-safe.
+ */
+public class Utf8Writer extends Writer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private final OutputStream outputStream;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    private char highSurrogate;
+
+    public Utf8Writer(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public Utf8Writer(OutputStream outputStream, int bufferSize) {
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("Buffer size must be at least 4 bytes");
+        }
+        this.outputStream = outputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Write bytes which are already encoded in UTF-8 into writer.
+     * If writer is Utf8Writer, bytes are copied directly, otherwise they're decoded first.
+     *
+     * @param writer Writer
+     * @param utf8   UTF-8 bytes
+     * @throws IOException when error
+     */
+    public static void writeUtf8(Writer writer, byte[] utf8) throws IOException {
+        if (writer instanceof Utf8Writer) {
+            ((Utf8Writer) writer).writeUtf8(utf8, 0, utf8.length);
+        } else {
+            writer.write(new String(utf8, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Write content of output stream (which must be encoded in UTF-8) into writer.
+     * If writer is Utf8Writer, bytes are copied directly, otherwise they're decoded first.
+     *
+     * @param writer Writer
+     * @param utf8   Output stream with UTF-8 bytes
+     * @throws IOException when error
+     */
+    public static void writeUtf8(Writer writer, ByteArrayOutputStream utf8) throws IOException {
+        if (writer instanceof Utf8Writer) {
+            Utf8Writer utf8Writer = (Utf8Writer) writer;
+            utf8Writer.flushBuffer();
+            utf8.writeTo(utf8Writer.outputStream);
+        } else {
+            writer.write(utf8.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Write bytes which are already encoded in UTF-8
+     *
+     * @param utf8   UTF-8 bytes
+     * @param offset Offset
+     * @param length Length
+     * @throws IOException when error
+     */
+    public void writeUtf8(byte[] utf8, int offset, int length) throws IOException {
+        writePendingSurrogate();
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                outputStream.write(utf8, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(utf8, offset, buffer, position, length);
+        position += length;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (buffer.length - position < 4) {
+            flushBuffer();
+        }
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (buffer.length - position < 4) {
+                flushBuffer();
+            }
+            encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (buffer.length - position < 4) {
+                flushBuffer();
+            }
+            encode(str.charAt(i));
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                highSurrogate = 0;
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            // lone high surrogate, there is still enough space for '?' and this character
+            highSurrogate = 0;
+            buffer[position++] = '?';
+        }
+        if (c < 0x80) {
+            buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[position++] = '?';
+        } else {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void writePendingSurrogate() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = '?';
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Flush buffered bytes into output stream and flush output stream.
+     * Pending high surrogate character is kept, because its low surrogate can still be written.
+     *
+     * @throws IOException when error
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writePendingSurrogate();
+        flushBuffer();
+        outputStream.close();
+    }
+
+}
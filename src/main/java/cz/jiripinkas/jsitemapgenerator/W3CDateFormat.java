@@ -44,6 +44,8 @@ import java.util.TimeZone;
  * <p>
  * Finally note that, like all classes that inherit from DateFormat, <b>this class is not thread-safe</b>.  Also note that you
  * can explicitly specify the timezone to use for formatting using the {@link #setTimeZone(TimeZone)} method.
+ * Dates are formatted by {@link W3CDateFormatter}, which is immutable and thread-safe, use it directly
+ * (or get it by {@link #toFormatter()}) when dates are formatted from multiple threads.
  *
  * @author Dan Fabulich
  * @see <a href="http://www.w3.org/TR/NOTE-datetime">Date and Time Formats</a>
@@ -93,6 +95,13 @@ public class W3CDateFormat extends SimpleDateFormat {
     }
 
     private final Pattern pattern;
+
+    /**
+     * Formatter for time zone {@link #formatterTimeZone}, it's replaced when time zone is changed
+     */
+    private transient W3CDateFormatter formatter;
+
+    private transient TimeZone formatterTimeZone;
     /**
      * The GMT ("zulu") time zone, for your convenience
      */
@@ -120,13 +129,40 @@ public class W3CDateFormat extends SimpleDateFormat {
      */
     @Override
     public StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition pos) {
+        return toAppendTo.append(toFormatter().format(date));
+    }
+
+    /**
+     * Get immutable formatter with the same pattern and current time zone of this format
+     *
+     * @return Formatter
+     */
+    public W3CDateFormatter toFormatter() {
+        TimeZone timeZone = getTimeZone();
+        W3CDateFormatter result = formatter;
+        if (result == null || formatterTimeZone != timeZone) {
+            result = W3CDateFormatter.of(pattern, timeZone.toZoneId());
+            formatter = result;
+            formatterTimeZone = timeZone;
+        }
+        return result;
+    }
+
+    /**
+     * Format date by SimpleDateFormat, {@link W3CDateFormatter} uses it for dates before Gregorian calendar cutover
+     *
+     * @param date Date
+     * @return Formatted date
+     */
+    String formatLegacy(Date date) {
+        StringBuffer toAppendTo = new StringBuffer();
         boolean includeTimeZone = pattern.includeTimeZone;
         if (pattern == Pattern.AUTO) {
             includeTimeZone = autoFormat(date);
         }
-        super.format(date, toAppendTo, pos);
+        super.format(date, toAppendTo, new FieldPosition(0));
         if (includeTimeZone) convertRfc822TimeZoneToW3c(toAppendTo);
-        return toAppendTo;
+        return toAppendTo.toString();
     }
 
     private boolean applyPattern(Pattern pattern) {
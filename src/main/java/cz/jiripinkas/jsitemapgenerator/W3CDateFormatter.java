@@ -0,0 +1,279 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.Objects;
+import java.util.TimeZone;
+
+/**
+ * Immutable and thread-safe formatter of dates in W3C date time formats (see {@link W3CDateFormat}).
+ * Output is the same as output of {@link W3CDateFormat} with the same pattern and time zone,
+ * including AUTO mode, but digits are written directly into buffer and pattern isn't parsed for every date.
+ * Time zone designator is "Z" for GMT zone and {@link ZoneOffset#UTC}, otherwise it's offset like "+01:00".
+ * Result of the last formatted timestamp is cached, so pages which share timestamp are formatted only once.
+ */
+public final class W3CDateFormatter {
+
+    /**
+     * Max. length of formatted date (year has at most 9 digits in {@link Date} range)
+     */
+    public static final int MAX_LENGTH = 35;
+
+    private static final ZoneId GMT = ZoneId.of("GMT");
+
+    /**
+     * Dates before 1900 (with one day margin for time zones) are formatted by {@link W3CDateFormat}, because it uses
+     * Julian calendar before Gregorian cutover and TimeZone doesn't have local mean time offsets before 1900
+     */
+    private static final long LEGACY_BEFORE_MILLIS = -2208988800000L + 86_400_000L;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final W3CDateFormat.Pattern pattern;
+
+    private final ZoneId zone;
+
+    private final ZoneRules rules;
+
+    /**
+     * Offset of zone if it's fixed, otherwise null
+     */
+    private final ZoneOffset fixedOffset;
+
+    private final boolean zulu;
+
+    private volatile Formatted lastFormatted;
+
+    private W3CDateFormatter(W3CDateFormat.Pattern pattern, ZoneId zone) {
+        this.pattern = pattern;
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+        this.zulu = GMT.equals(zone) || ZoneOffset.UTC.equals(zone);
+    }
+
+    /**
+     * Create formatter in AUTO mode using default time zone (same as {@link W3CDateFormat#W3CDateFormat()})
+     *
+     * @return Formatter
+     */
+    public static W3CDateFormatter auto() {
+        return of(W3CDateFormat.Pattern.AUTO, ZoneId.systemDefault());
+    }
+
+    /**
+     * Create formatter
+     *
+     * @param pattern Pattern or AUTO mode
+     * @param zone    Time zone
+     * @return Formatter
+     */
+    public static W3CDateFormatter of(W3CDateFormat.Pattern pattern, ZoneId zone) {
+        return new W3CDateFormatter(Objects.requireNonNull(pattern), Objects.requireNonNull(zone));
+    }
+
+    public W3CDateFormat.Pattern getPattern() {
+        return pattern;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Format date
+     *
+     * @param date Date
+     * @return Formatted date
+     */
+    public String format(Date date) {
+        return format(date.getTime());
+    }
+
+    /**
+     * Format date
+     *
+     * @param epochMillis Date in milliseconds since epoch
+     * @return Formatted date
+     */
+    public String format(long epochMillis) {
+        return formatted(epochMillis).string;
+    }
+
+    /**
+     * Format date and append result to builder
+     *
+     * @param builder     Builder
+     * @param epochMillis Date in milliseconds since epoch
+     * @return builder
+     */
+    public StringBuilder formatTo(StringBuilder builder, long epochMillis) {
+        return builder.append(formatted(epochMillis).string);
+    }
+
+    /**
+     * Format date into buffer as ASCII bytes (which are the same in UTF-8)
+     *
+     * @param epochMillis Date in milliseconds since epoch
+     * @param buffer      Buffer, at least {@link #MAX_LENGTH} bytes must be available from offset
+     * @param offset      Offset
+     * @return Offset after formatted date
+     */
+    public int formatTo(long epochMillis, byte[] buffer, int offset) {
+        Formatted formatted = lastFormatted;
+        if (formatted != null && formatted.epochMillis == epochMillis) {
+            System.arraycopy(formatted.bytes, 0, buffer, offset, formatted.bytes.length);
+            return offset + formatted.bytes.length;
+        }
+        if (epochMillis < LEGACY_BEFORE_MILLIS) {
+            byte[] bytes = formatted(epochMillis).bytes;
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+            return offset + bytes.length;
+        }
+        return write(epochMillis, buffer, offset);
+    }
+
+    private Formatted formatted(long epochMillis) {
+        Formatted formatted = lastFormatted;
+        if (formatted != null && formatted.epochMillis == epochMillis) {
+            return formatted;
+        }
+        String string;
+        if (epochMillis < LEGACY_BEFORE_MILLIS) {
+            W3CDateFormat legacyFormat = new W3CDateFormat(pattern);
+            legacyFormat.setTimeZone(TimeZone.getTimeZone(zone));
+            string = legacyFormat.formatLegacy(new Date(epochMillis));
+        } else {
+            byte[] buffer = new byte[MAX_LENGTH];
+            string = new String(buffer, 0, write(epochMillis, buffer, 0), StandardCharsets.ISO_8859_1);
+        }
+        formatted = new Formatted(epochMillis, string);
+        lastFormatted = formatted;
+        return formatted;
+    }
+
+    private int write(long epochMillis, byte[] buffer, int offset) {
+        ZoneOffset zoneOffset = fixedOffset != null ? fixedOffset : rules.getOffset(Instant.ofEpochMilli(epochMillis));
+        long localMillis = epochMillis + zoneOffset.getTotalSeconds() * 1000L;
+        long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(localMillis, MILLIS_PER_DAY);
+        int millis = millisOfDay % 1000;
+        int second = millisOfDay / 1000 % 60;
+        int minute = millisOfDay / 60_000 % 60;
+        int hour = millisOfDay / 3_600_000;
+
+        W3CDateFormat.Pattern effectivePattern = pattern;
+        if (effectivePattern == W3CDateFormat.Pattern.AUTO) {
+            if (millis > 0) {
+                effectivePattern = W3CDateFormat.Pattern.MILLISECOND;
+            } else if (second > 0) {
+                effectivePattern = W3CDateFormat.Pattern.SECOND;
+            } else if (hour + minute > 0) {
+                effectivePattern = W3CDateFormat.Pattern.MINUTE;
+            } else {
+                effectivePattern = W3CDateFormat.Pattern.DAY;
+            }
+        }
+
+        // civil date from epoch day, see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int position = writeYear(year, buffer, offset);
+        if (effectivePattern == W3CDateFormat.Pattern.YEAR) {
+            return position;
+        }
+        buffer[position++] = '-';
+        position = write2(month, buffer, position);
+        if (effectivePattern == W3CDateFormat.Pattern.MONTH) {
+            return position;
+        }
+        buffer[position++] = '-';
+        position = write2(day, buffer, position);
+        if (effectivePattern == W3CDateFormat.Pattern.DAY) {
+            return position;
+        }
+        buffer[position++] = 'T';
+        position = write2(hour, buffer, position);
+        buffer[position++] = ':';
+        position = write2(minute, buffer, position);
+        if (effectivePattern != W3CDateFormat.Pattern.MINUTE) {
+            buffer[position++] = ':';
+            position = write2(second, buffer, position);
+            if (effectivePattern == W3CDateFormat.Pattern.MILLISECOND) {
+                buffer[position++] = '.';
+                buffer[position++] = (byte) ('0' + millis / 100);
+                position = write2(millis % 100, buffer, position);
+            }
+        }
+        return writeTimeZone(zoneOffset, buffer, position);
+    }
+
+    private int writeTimeZone(ZoneOffset zoneOffset, byte[] buffer, int position) {
+        if (zulu) {
+            buffer[position++] = 'Z';
+            return position;
+        }
+        // seconds of offset are truncated (same as SimpleDateFormat)
+        int offsetMinutes = zoneOffset.getTotalSeconds() / 60;
+        if (offsetMinutes < 0) {
+            buffer[position++] = '-';
+            offsetMinutes = -offsetMinutes;
+        } else {
+            buffer[position++] = '+';
+        }
+        position = write2(offsetMinutes / 60, buffer, position);
+        buffer[position++] = ':';
+        return write2(offsetMinutes % 60, buffer, position);
+    }
+
+    private static int writeYear(long year, byte[] buffer, int position) {
+        // year is at least 1900 (earlier dates are formatted by W3CDateFormat), it has at least 4 digits
+        int digits = 4;
+        for (long limit = 10_000; year >= limit; limit *= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + year % 10);
+            year /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int write2(int value, byte[] buffer, int position) {
+        buffer[position] = (byte) ('0' + value / 10);
+        buffer[position + 1] = (byte) ('0' + value % 10);
+        return position + 2;
+    }
+
+    /**
+     * Formatted timestamp, it's immutable, so it can be published without synchronization
+     */
+    private static final class Formatted {
+
+        private final long epochMillis;
+
+        private final String string;
+
+        private final byte[] bytes;
+
+        private Formatted(long epochMillis, String string) {
+            this.epochMillis = epochMillis;
+            this.string = string;
+            this.bytes = string.getBytes(StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -28,6 +28,21 @@ public class WebPage implements Comparable<WebPage> {
 
     private List<Image> images;
 
+    /**
+     * Result of constructName(), it's computed when it's needed first time and reset when name, dir or extension is changed
+     */
+    private String constructedName;
+
+    /**
+     * Name which is resolved when sitemap is rendered
+     */
+    private DeferredName deferredName;
+
+    /**
+     * Alternate names which are resolved when sitemap is rendered
+     */
+    private Map<String, DeferredName> deferredAlternateNames;
+
     /**
      * Method for creating WebPage only with name
      * (this can be useful for really simple sitemaps
@@ -96,6 +111,48 @@ public class WebPage implements Comparable<WebPage> {
         return this;
     }
 
+    /**
+     * Check if page has name or alternate names which are resolved when sitemap is rendered
+     * (see {@link WebPageBuilder#deferredName(Supplier)})
+     *
+     * @return true if page has deferred names
+     */
+    public boolean isDeferred() {
+        return deferredName != null || deferredAlternateNames != null;
+    }
+
+    List<DeferredName> getDeferredNames() {
+        List<DeferredName> deferredNames = new ArrayList<>();
+        if (deferredName != null) {
+            deferredNames.add(deferredName);
+        }
+        if (deferredAlternateNames != null) {
+            deferredNames.addAll(deferredAlternateNames.values());
+        }
+        return deferredNames;
+    }
+
+    /**
+     * Set resolved deferred names as name and alternate names
+     */
+    void applyDeferredNames() {
+        if (deferredName != null) {
+            setName(deferredName.getName());
+            deferredName = null;
+        }
+        if (deferredAlternateNames != null) {
+            deferredAlternateNames.forEach((language, alternateName) -> addAlternateName(language, alternateName.getName()));
+            deferredAlternateNames = null;
+        }
+    }
+
+    private void addDeferredAlternateName(String language, DeferredName alternateName) {
+        if (deferredAlternateNames == null) {
+            deferredAlternateNames = new HashMap<>();
+        }
+        deferredAlternateNames.put(language, alternateName);
+    }
+
     public List<Image> getImages() {
         return images;
     }
@@ -122,6 +179,7 @@ public class WebPage implements Comparable<WebPage> {
 
     public void setName(String name) {
         this.name = name;
+        this.constructedName = null;
     }
 
     public void setAlternateNames(Map<String, String> alternateNames) {
@@ -149,12 +207,10 @@ public class WebPage implements Comparable<WebPage> {
      * @return Name
      */
     public String constructName() {
-        String result = name;
-        if (dir != null) {
-            result = UrlUtil.connectUrlParts(dir, result);
-        }
-        if (extension != null) {
-            result = result + "." + extension;
+        String result = constructedName;
+        if (result == null) {
+            result = constructName(name);
+            constructedName = result;
         }
         return result;
     }
@@ -165,14 +221,23 @@ public class WebPage implements Comparable<WebPage> {
      * @return Name
      */
     public String constructShortName() {
-        String result = shortName;
+        return constructName(shortName);
+    }
+
+    private String constructName(String name) {
+        if (dir == null && extension == null) {
+            return name;
+        }
+        StringBuilder result = new StringBuilder();
         if (dir != null) {
-            result = UrlUtil.connectUrlParts(dir, result);
+            UrlUtil.connectUrlParts(result, dir, name);
+        } else {
+            result.append(name);
         }
         if (extension != null) {
-            result = result + "." + extension;
+            result.append('.').append(extension);
         }
-        return result;
+        return result.toString();
     }
 
     public String getName() {
@@ -201,6 +266,7 @@ public class WebPage implements Comparable<WebPage> {
 
     public void setDir(String dir) {
         this.dir = dir;
+        this.constructedName = null;
     }
 
     public String getExtension() {
@@ -209,6 +275,7 @@ public class WebPage implements Comparable<WebPage> {
 
     public void setExtension(String extension) {
         this.extension = extension;
+        this.constructedName = null;
     }
 
     private static final Comparator<Double> PRIORITY_COMPARATOR = (a, b) -> {
@@ -329,6 +396,59 @@ public class WebPage implements Comparable<WebPage> {
             return this;
         }
 
+        /**
+         * Sets WebPage name which is resolved by supplier when sitemap is rendered.
+         * Names of all pages are resolved at once in parallel (see {@link AbstractGenerator#deferredNameResolution(java.util.concurrent.Executor, int)}).
+         * Until then page isn't in sitemap and defaults of generator are applied when name is resolved.
+         *
+         * @param supplier Supplier
+         * @return this
+         */
+        public WebPageBuilder deferredName(Supplier<String> supplier) {
+            webPage.deferredName = new DeferredName(Objects.requireNonNull(supplier));
+            return this;
+        }
+
+        /**
+         * Sets WebPage name which is resolved by batch resolver when sitemap is rendered, see {@link #deferredName(Supplier)}.
+         * Keys of all pages with the same resolver are resolved in batches (see {@link AbstractGenerator#deferredNameBatchSize(int)}).
+         *
+         * @param key      Key which is passed to resolver
+         * @param resolver Batch resolver
+         * @param <K>      Type of key
+         * @return this
+         */
+        public <K> WebPageBuilder deferredName(K key, BatchNameResolver<K> resolver) {
+            webPage.deferredName = new DeferredName(key, Objects.requireNonNull(resolver));
+            return this;
+        }
+
+        /**
+         * Sets WebPage alternate name which is resolved by supplier when sitemap is rendered, see {@link #deferredName(Supplier)}
+         *
+         * @param language Alternate language
+         * @param supplier Supplier
+         * @return this
+         */
+        public WebPageBuilder deferredAlternateName(String language, Supplier<String> supplier) {
+            webPage.addDeferredAlternateName(language, new DeferredName(Objects.requireNonNull(supplier)));
+            return this;
+        }
+
+        /**
+         * Sets WebPage alternate name which is resolved by batch resolver when sitemap is rendered, see {@link #deferredName(Object, BatchNameResolver)}
+         *
+         * @param language Alternate language
+         * @param key      Key which is passed to resolver
+         * @param resolver Batch resolver
+         * @param <K>      Type of key
+         * @return this
+         */
+        public <K> WebPageBuilder deferredAlternateName(String language, K key, BatchNameResolver<K> resolver) {
+            webPage.addDeferredAlternateName(language, new DeferredName(key, Objects.requireNonNull(resolver)));
+            return this;
+        }
+
         /**
          * Sets prefix dir to name. Final name will be "dirName/name"
          *
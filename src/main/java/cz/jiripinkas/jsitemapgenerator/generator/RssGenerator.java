@@ -6,6 +6,8 @@ import cz.jiripinkas.jsitemapgenerator.WebPage;
 
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 public class RssGenerator extends AbstractGenerator<RssGenerator> {
 
@@ -98,6 +100,19 @@ public class RssGenerator extends AbstractGenerator<RssGenerator> {
         return new RssGenerator(baseUrl, null, null);
     }
 
+    /**
+     * Collector which adds pages from (parallel) stream into new RssGenerator, see {@link AbstractGenerator#collector(Supplier)}.
+     * Partial results use the default page store, because items with the same lastMod are ordered by URL.
+     *
+     * @param baseUrl        Base URL
+     * @param webTitle       Web title
+     * @param webDescription Web description
+     * @return Collector
+     */
+    public static Collector<WebPage, ?, RssGenerator> collector(String baseUrl, String webTitle, String webDescription) {
+        return collector(() -> RssGenerator.of(baseUrl, webTitle, webDescription));
+    }
+
     /**
      * Set Web title
      *
@@ -127,6 +142,7 @@ public class RssGenerator extends AbstractGenerator<RssGenerator> {
      * @return Constructed RSS
      */
     public String toString() {
+        resolveDeferredPages();
         StringBuilder builder = new StringBuilder();
         builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>" + "\n")
                 .append("<rss version=\"2.0\">" + "\n")
@@ -169,8 +185,8 @@ public class RssGenerator extends AbstractGenerator<RssGenerator> {
                     .append(webPage.getShortDescription())
                     .append("</description>" + "\n")
 
-                    .append("<link>")
-                    .append(UrlUtil.connectUrlParts(baseUrl, webPage.constructShortName()))
+                    .append("<link>");
+            UrlUtil.connectUrlParts(builder, baseUrl, webPage.constructShortName())
                     .append("</link>" + "\n")
 
                     .append("<pubDate>")
@@ -0,0 +1,215 @@
+package cz.jiripinkas.jsitemapgenerator.generator;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Sharding class which stores configuration of sharded sitemap output,
+ * see {@link SitemapGenerator#toShardedFiles(Sharding)}.
+ * Sitemap is split into files sitemap-1.xml, sitemap-2.xml, ... which never exceed
+ * sitemap protocol limits (50,000 URLs and 50 MB uncompressed) and sitemap index
+ * referencing these files is generated.
+ */
+public class Sharding {
+
+    /**
+     * Maximum number of URLs in one sitemap file according to sitemap protocol
+     */
+    public static final int MAX_URLS = 50_000;
+
+    /**
+     * Maximum size of one (uncompressed) sitemap file according to sitemap protocol
+     */
+    public static final long MAX_BYTES = 50L * 1024 * 1024;
+
+    private Path directory;
+
+    private String fileNamePrefix;
+
+    private String dir;
+
+    private boolean gzip;
+
+    private int maxUrls;
+
+    private long maxBytes;
+
+    private String indexFileName;
+
+    public Sharding(Path directory, String fileNamePrefix, String dir, boolean gzip, int maxUrls, long maxBytes, String indexFileName) {
+        this.directory = directory;
+        this.fileNamePrefix = fileNamePrefix;
+        this.dir = dir;
+        this.gzip = gzip;
+        this.maxUrls = maxUrls;
+        this.maxBytes = maxBytes;
+        this.indexFileName = indexFileName;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public String getFileNamePrefix() {
+        return fileNamePrefix;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public int getMaxUrls() {
+        return maxUrls;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public String getIndexFileName() {
+        return indexFileName;
+    }
+
+    /**
+     * Construct file name of n-th sitemap file (starting with 1)
+     *
+     * @param number Number of sitemap file
+     * @return File name, for example "sitemap-1.xml.gz"
+     */
+    public String fileName(int number) {
+        return fileNamePrefix + "-" + number + (gzip ? ".xml.gz" : ".xml");
+    }
+
+    public static ShardingBuilder builder() {
+        return new ShardingBuilder();
+    }
+
+    public static class ShardingBuilder {
+
+        private Path directory;
+
+        private String fileNamePrefix;
+
+        private String dir;
+
+        private boolean gzip;
+
+        private int maxUrls;
+
+        private long maxBytes;
+
+        private String indexFileName;
+
+        private ShardingBuilder() {
+            fileNamePrefix = "sitemap";
+            maxUrls = MAX_URLS;
+            maxBytes = MAX_BYTES;
+            indexFileName = "sitemap.xml";
+        }
+
+        /**
+         * Set up output directory where sitemap files and sitemap index will be stored
+         *
+         * @param directory Output directory
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Set up prefix of sitemap file names.
+         * If you do not call this method, default prefix will be "sitemap" (files will be sitemap-1.xml, sitemap-2.xml, ...)
+         *
+         * @param fileNamePrefix File name prefix
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder fileNamePrefix(String fileNamePrefix) {
+            this.fileNamePrefix = fileNamePrefix;
+            return this;
+        }
+
+        /**
+         * Set up dir (relative to base URL) under which sitemap files are published.
+         * Sitemap index will reference files as "dir/sitemap-1.xml"
+         *
+         * @param dir Dir
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder dir(String dir) {
+            this.dir = dir;
+            return this;
+        }
+
+        /**
+         * Sitemap files will be gzipped (sitemap-1.xml.gz, sitemap-2.xml.gz, ...).
+         * Size limit is still checked against uncompressed size.
+         *
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder gzip() {
+            this.gzip = true;
+            return this;
+        }
+
+        /**
+         * Set up maximum number of URLs in one sitemap file.
+         * If you do not call this method, default will be {@link #MAX_URLS}
+         *
+         * @param maxUrls Maximum number of URLs
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder maxUrls(int maxUrls) {
+            this.maxUrls = maxUrls;
+            return this;
+        }
+
+        /**
+         * Set up maximum size of one (uncompressed) sitemap file in bytes.
+         * If you do not call this method, default will be {@link #MAX_BYTES}
+         *
+         * @param maxBytes Maximum size in bytes
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Set up file name of sitemap index. If you do not call this method,
+         * default will be "sitemap.xml". If it's null, sitemap index won't be stored to file.
+         *
+         * @param indexFileName Sitemap index file name
+         * @return ShardingBuilder
+         */
+        public ShardingBuilder indexFileName(String indexFileName) {
+            this.indexFileName = indexFileName;
+            return this;
+        }
+
+        /**
+         * Build Sharding object. Before call to this method output directory
+         * must be set up using {@link #directory(Path)} method!
+         *
+         * @return Sharding
+         */
+        public Sharding build() {
+            Objects.requireNonNull(directory, "Must provide output directory!");
+            if (maxUrls < 1 || maxUrls > MAX_URLS) {
+                throw new IllegalArgumentException("Max URLs must be between 1 and " + MAX_URLS);
+            }
+            if (maxBytes < 1 || maxBytes > MAX_BYTES) {
+                throw new IllegalArgumentException("Max bytes must be between 1 and " + MAX_BYTES);
+            }
+            return new Sharding(directory, fileNamePrefix, dir, gzip, maxUrls, maxBytes, indexFileName);
+        }
+
+    }
+
+}
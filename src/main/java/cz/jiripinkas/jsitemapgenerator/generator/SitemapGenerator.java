@@ -1,14 +1,26 @@
 package cz.jiripinkas.jsitemapgenerator.generator;
 
+import cz.jiripinkas.jsitemapgenerator.AbstractGenerator;
 import cz.jiripinkas.jsitemapgenerator.AbstractSitemapGenerator;
 import cz.jiripinkas.jsitemapgenerator.Image;
 import cz.jiripinkas.jsitemapgenerator.UrlUtil;
+import cz.jiripinkas.jsitemapgenerator.Utf8Writer;
 import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.store.HashPageStore;
+import cz.jiripinkas.jsitemapgenerator.store.PageRecord;
+import cz.jiripinkas.jsitemapgenerator.store.PageRecordStore;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 public class SitemapGenerator extends AbstractSitemapGenerator<SitemapGenerator> {
 
@@ -53,6 +65,17 @@ public class SitemapGenerator extends AbstractSitemapGenerator<SitemapGenerator>
         return new SitemapGenerator(baseUrl);
     }
 
+    /**
+     * Collector which adds pages from (parallel) stream into new SitemapGenerator, see {@link AbstractGenerator#collector(Supplier)}.
+     * Partial results use {@link HashPageStore}, so they're merged in linear time.
+     *
+     * @param baseUrl Base URL
+     * @return Collector
+     */
+    public static Collector<WebPage, ?, SitemapGenerator> collector(String baseUrl) {
+        return collector(() -> SitemapGenerator.of(baseUrl).pageStore(new HashPageStore()));
+    }
+
     /**
      * Construct sitemap into array of Strings. The URLs will be ordered using
      * priority in descending order (URLs with higher priority will be at the
@@ -62,25 +85,11 @@ public class SitemapGenerator extends AbstractSitemapGenerator<SitemapGenerator>
      */
     @Override
     public String[] toStringArray() {
-        // auto-detect additional namespaces
-        List<AdditionalNamespace> additionalNamespaces = new ArrayList<>();
-        boolean hasImages = urls.values().stream()
-                .anyMatch(webPage -> webPage.getImages() != null);
-        if (hasImages) {
-            additionalNamespaces.add(AdditionalNamespace.IMAGE);
-        }
-        boolean hasAlternateNames = urls.values().stream()
-                .anyMatch(webPage -> webPage.getAlternateNames() != null);
-        if (hasAlternateNames) {
-            additionalNamespaces.add(AdditionalNamespace.XHTML);
-        }
-
+        resolveDeferredPages();
         List<String> out = new ArrayList<>();
         out.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        out.add("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"" + constructAdditionalNamespacesString(additionalNamespaces) + ">\n");
-        List<WebPage> values = new ArrayList<>(urls.values());
-        Collections.sort(values);
-        for (WebPage webPage : values) {
+        out.add(constructUrlSetStartTag());
+        for (WebPage webPage : getSortedPages()) {
             out.add("<url>\n");
             out.add(constructUrl(webPage));
             if (webPage.getImages() != null) {
@@ -94,32 +103,398 @@ public class SitemapGenerator extends AbstractSitemapGenerator<SitemapGenerator>
         return out.toArray(new String[]{});
     }
 
+    /**
+     * Write sitemap into writer url by url. The URLs will be ordered using
+     * priority in descending order (URLs with higher priority will be at the
+     * top).
+     *
+     * @param writer Writer
+     * @throws IOException when error
+     */
+    @Override
+    protected void writeSitemap(Writer writer) throws IOException {
+        resolveDeferredPages();
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write(constructUrlSetStartTag());
+        if (urls instanceof PageRecordStore) {
+            try {
+                for (Iterator<PageRecord> records = ((PageRecordStore) urls).sortedRecords(); records.hasNext(); ) {
+                    checkInterrupted();
+                    writeUrl(writer, records.next());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            writePages(writer, getSortedPages(), this::writeUrl);
+        }
+        writer.write("</urlset>");
+    }
+
+    /**
+     * Construct sitemap split into files sitemap-1.xml, sitemap-2.xml, ... and sitemap index which references them.
+     * No file exceeds limits set in sharding (by default sitemap protocol limits: 50,000 URLs and 50 MB uncompressed).
+     * All files are written in one pass: every url is rendered into a small buffer first, so its exact size in bytes
+     * is known before it's decided into which file it will be written.
+     * Sitemap files of earlier generation which aren't written now (for example sitemap-5.xml when there are only
+     * 4 files now) are deleted.
+     * If atomic file output is enabled (see {@link #atomicFileOutput(boolean)}), all files are written into temporary
+     * directory which then replaces the output directory, so readers never see partially written files or files
+     * from different generations. Replacement is two renames, between them the output directory doesn't exist
+     * for a moment. In that case output directory must not contain other files than sitemap files and sitemap index.
+     *
+     * @param sharding Sharding configuration
+     * @return SitemapIndexGenerator which references all generated sitemap files
+     * @throws IOException when error
+     */
+    public SitemapIndexGenerator toShardedFiles(Sharding sharding) throws IOException {
+        resolveDeferredPages();
+        if (!isAtomicFileOutput()) {
+            Files.createDirectories(sharding.getDirectory());
+            return writeShardedFiles(sharding, sharding.getDirectory());
+        }
+        Path directory = sharding.getDirectory().toAbsolutePath();
+        checkShardedDirectory(sharding, directory);
+        Files.createDirectories(directory.getParent());
+        Path stagingDirectory = Files.createDirectory(directory.resolveSibling("." + directory.getFileName() + "." + UUID.randomUUID() + ".tmp"));
+        try {
+            SitemapIndexGenerator sitemapIndexGenerator = writeShardedFiles(sharding, stagingDirectory);
+            replaceDirectory(directory, stagingDirectory);
+            return sitemapIndexGenerator;
+        } finally {
+            deleteDirectory(stagingDirectory);
+        }
+    }
+
+    private SitemapIndexGenerator writeShardedFiles(Sharding sharding, Path directory) throws IOException {
+        SitemapIndexGenerator sitemapIndexGenerator = SitemapIndexGenerator.of(baseUrl);
+        byte[] header = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + constructUrlSetStartTag()).getBytes(StandardCharsets.UTF_8);
+        byte[] footer = "</urlset>".getBytes(StandardCharsets.UTF_8);
+        int fileCount;
+        try (ShardWriter shardWriter = new ShardWriter(sharding, directory, header, footer, sitemapIndexGenerator)) {
+            if (urls instanceof PageRecordStore) {
+                try {
+                    for (Iterator<PageRecord> records = ((PageRecordStore) urls).sortedRecords(); records.hasNext(); ) {
+                        checkInterrupted();
+                        PageRecord pageRecord = records.next();
+                        long lastMod = pageRecord.getLastModMillis();
+                        shardWriter.write(renderRecord(pageRecord), pageRecord.getName(), lastMod != PageRecord.NO_LAST_MOD ? new Date(lastMod) : null);
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            } else {
+                for (WebPage webPage : getSortedPages()) {
+                    checkInterrupted();
+                    shardWriter.write(renderFragment(webPage, this::writeUrl), webPage.constructName(), webPage.getLastMod());
+                }
+            }
+            shardWriter.finish();
+            fileCount = shardWriter.fileNumber;
+        }
+        if (sharding.getIndexFileName() != null) {
+            writeFile(directory.resolve(sharding.getIndexFileName()).toFile(), outputStream -> sitemapIndexGenerator.writeTo(outputStream));
+        }
+        deleteStaleShardFiles(sharding, directory, fileCount);
+        return sitemapIndexGenerator;
+    }
+
+    /**
+     * Delete sitemap files which weren't written now, but by earlier generation with more files
+     * or with different gzip setting, so directory doesn't contain files which aren't in sitemap index
+     */
+    private static void deleteStaleShardFiles(Sharding sharding, Path directory, int fileCount) throws IOException {
+        String prefix = sharding.getFileNamePrefix() + "-";
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                String fileName = path.getFileName().toString();
+                int numberEnd = fileName.indexOf('.', prefix.length());
+                if (!fileName.startsWith(prefix) || numberEnd == -1) {
+                    continue;
+                }
+                String extension = fileName.substring(numberEnd);
+                if (!extension.equals(".xml") && !extension.equals(".xml.gz")) {
+                    continue;
+                }
+                String number = fileName.substring(prefix.length(), numberEnd);
+                // only names which this generator writes, for example "sitemap-01.xml" isn't one of them
+                if (number.isEmpty() || number.length() > 9 || number.charAt(0) == '0'
+                        || !number.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    continue;
+                }
+                int fileNumber = Integer.parseInt(number);
+                if (fileNumber > fileCount || !fileName.equals(sharding.fileName(fileNumber))) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Atomic sharded output replaces the whole directory, so it must not contain other files than sharded output
+     */
+    private static void checkShardedDirectory(Sharding sharding, Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("File '" + directory + "' exists but is not a directory");
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (Path path : paths) {
+                String fileName = path.getFileName().toString();
+                boolean shardedFile = fileName.startsWith(sharding.getFileNamePrefix() + "-")
+                        && (fileName.endsWith(".xml") || fileName.endsWith(".xml.gz"));
+                if (!shardedFile && !fileName.equals(sharding.getIndexFileName())) {
+                    throw new IOException("Directory '" + directory + "' contains file '" + fileName
+                            + "', atomic sharded output requires directory which contains only sitemap files, because the whole directory is replaced");
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace directory with new directory. Old directory is moved aside and new directory is moved to its place.
+     * Both moves are atomic, so readers never see mix of old and new files, but between the moves the directory
+     * doesn't exist and readers get no files.
+     */
+    private void replaceDirectory(Path directory, Path newDirectory) throws IOException {
+        if (isForceFileOutput()) {
+            forceDirectory(newDirectory);
+        }
+        if (!Files.exists(directory)) {
+            Files.move(newDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Path oldDirectory = directory.resolveSibling("." + directory.getFileName() + "." + UUID.randomUUID() + ".old");
+            Files.move(directory, oldDirectory, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                Files.move(newDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                Files.move(oldDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+                throw e;
+            }
+            deleteDirectory(oldDirectory);
+        }
+        if (isForceFileOutput()) {
+            forceDirectory(directory.getParent());
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Construct sitemap split into files and sitemap index, see {@link #toShardedFiles(Sharding)}.
+     * Generated SitemapIndexGenerator is consumed by supplied Consumer
+     *
+     * @param sharding                       Sharding configuration
+     * @param sitemapIndexGeneratorConsumer Consumer which consumes SitemapIndexGenerator
+     * @return this
+     * @throws IOException when error
+     */
+    public SitemapGenerator toShardedFiles(Sharding sharding, Consumer<SitemapIndexGenerator> sitemapIndexGeneratorConsumer) throws IOException {
+        sitemapIndexGeneratorConsumer.accept(toShardedFiles(sharding));
+        return getThis();
+    }
+
+    /**
+     * Writes rendered urls into sitemap files, new file is started when url doesn't fit into current file
+     */
+    private class ShardWriter implements Closeable {
+
+        private final Sharding sharding;
+
+        private final Path directory;
+
+        private final byte[] header;
+
+        private final byte[] footer;
+
+        private final SitemapIndexGenerator sitemapIndexGenerator;
+
+        private int fileNumber;
+
+        private ShardFile shardFile;
+
+        private ShardWriter(Sharding sharding, Path directory, byte[] header, byte[] footer, SitemapIndexGenerator sitemapIndexGenerator) {
+            this.sharding = sharding;
+            this.directory = directory;
+            this.header = header;
+            this.footer = footer;
+            this.sitemapIndexGenerator = sitemapIndexGenerator;
+        }
+
+        private void write(byte[] url, String name, Date lastMod) throws IOException {
+            if (shardFile != null && !shardFile.fits(url.length)) {
+                finishShardFile();
+            }
+            if (shardFile == null) {
+                shardFile = newShardFile();
+                if (!shardFile.fits(url.length)) {
+                    throw new IllegalStateException("Url " + name + " doesn't fit into sitemap file with max size " + sharding.getMaxBytes() + " bytes");
+                }
+            }
+            shardFile.write(url, lastMod);
+        }
+
+        private void finish() throws IOException {
+            if (shardFile == null) {
+                shardFile = newShardFile();
+            }
+            finishShardFile();
+        }
+
+        private void finishShardFile() throws IOException {
+            shardFile.finish();
+            sitemapIndexGenerator.addPage(shardFile.toWebPage());
+            shardFile = null;
+        }
+
+        private ShardFile newShardFile() throws IOException {
+            String fileName = sharding.fileName(++fileNumber);
+            OutputStream outputStream = new BufferedOutputStream(newFileOutputStream(directory.resolve(fileName)), BUFFER_SIZE);
+            if (sharding.isGzip()) {
+                outputStream = newGzipOutputStream(outputStream);
+            }
+            return new ShardFile(fileName, sharding, outputStream, header, footer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (shardFile != null) {
+                shardFile.close();
+            }
+        }
+    }
+
+    private byte[] renderRecord(PageRecord pageRecord) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+        Writer writer = new Utf8Writer(outputStream, 256);
+        writeUrl(writer, pageRecord);
+        writer.flush();
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Write single url element (including images) into writer
+     *
+     * @param writer  Writer
+     * @param webPage WebPage
+     * @throws IOException when error
+     */
+    protected void writeUrl(Writer writer, WebPage webPage) throws IOException {
+        writer.write("<url>\n");
+        writer.write(constructUrl(webPage));
+        if (webPage.getImages() != null) {
+            for (Image image : webPage.getImages()) {
+                writer.write(constructImage(image));
+            }
+        }
+        writer.write("</url>\n");
+    }
+
+    /**
+     * Write single url element from page record (see {@link PageRecordStore}) into writer.
+     * Output is the same as output of {@link #writeUrl(Writer, WebPage)} for the same page.
+     *
+     * @param writer     Writer
+     * @param pageRecord Page record
+     * @throws IOException when error
+     */
+    protected void writeUrl(Writer writer, PageRecord pageRecord) throws IOException {
+        writer.write("<url>\n<loc>");
+        writeAbsoluteUrl(writer, pageRecord.getName());
+        writer.write("</loc>\n");
+        String[] alternateNames = pageRecord.getAlternateNames();
+        if (alternateNames != null) {
+            for (int i = 0; i < alternateNames.length; i += 2) {
+                writer.write("<xhtml:link rel=\"alternate\" hreflang=\"");
+                UrlUtil.escapeXmlSpecialCharacters(writer, alternateNames[i]);
+                writer.write("\" href=\"");
+                writeAbsoluteUrl(writer, alternateNames[i + 1]);
+                writer.write("\"/>\n");
+            }
+        }
+        long lastMod = pageRecord.getLastModMillis();
+        if (lastMod != PageRecord.NO_LAST_MOD) {
+            writeLastMod(writer, lastMod);
+        }
+        if (pageRecord.getChangeFreq() != null) {
+            Utf8Writer.writeUtf8(writer, UrlElements.changeFreqUtf8(pageRecord.getChangeFreq()));
+        }
+        double priority = pageRecord.getPriority();
+        if (!Double.isNaN(priority)) {
+            Utf8Writer.writeUtf8(writer, UrlElements.priorityUtf8(priority));
+        }
+        if (pageRecord.getImages() != null) {
+            for (Image image : pageRecord.getImages()) {
+                writer.write(constructImage(image));
+            }
+        }
+        writer.write("</url>\n");
+    }
+
+    /**
+     * Construct urlset start tag, additional namespaces are auto-detected from web pages
+     *
+     * @return urlset start tag
+     */
+    private String constructUrlSetStartTag() {
+        // auto-detect additional namespaces
+        List<AdditionalNamespace> additionalNamespaces = new ArrayList<>();
+        boolean hasImages = urls instanceof PageRecordStore
+                ? ((PageRecordStore) urls).hasImages()
+                : urls.values().stream().anyMatch(webPage -> webPage.getImages() != null);
+        if (hasImages) {
+            additionalNamespaces.add(AdditionalNamespace.IMAGE);
+        }
+        boolean hasAlternateNames = urls instanceof PageRecordStore
+                ? ((PageRecordStore) urls).hasAlternateNames()
+                : urls.values().stream().anyMatch(webPage -> webPage.getAlternateNames() != null);
+        if (hasAlternateNames) {
+            additionalNamespaces.add(AdditionalNamespace.XHTML);
+        }
+        return "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"" + constructAdditionalNamespacesString(additionalNamespaces) + ">\n";
+    }
+
+    private List<WebPage> getSortedPages() {
+        return urls.sortedValues();
+    }
+
     protected String constructImage(Image image) {
         StringBuilder out = new StringBuilder();
         out.append("<image:image>\n");
         if (image.getLoc() != null) {
             out.append("<image:loc>");
-            out.append(getAbsoluteUrl(image.getLoc()));
+            appendAbsoluteUrl(out, image.getLoc());
             out.append("</image:loc>\n");
         }
         if (image.getCaption() != null) {
             out.append("<image:caption>");
-            out.append(UrlUtil.escapeXmlSpecialCharacters(image.getCaption()));
+            UrlUtil.escapeXmlSpecialCharacters(out, image.getCaption());
             out.append("</image:caption>\n");
         }
         if (image.getGeoLocation() != null) {
             out.append("<image:geo_location>");
-            out.append(UrlUtil.escapeXmlSpecialCharacters(image.getGeoLocation()));
+            UrlUtil.escapeXmlSpecialCharacters(out, image.getGeoLocation());
             out.append("</image:geo_location>\n");
         }
         if (image.getTitle() != null) {
             out.append("<image:title>");
-            out.append(UrlUtil.escapeXmlSpecialCharacters(image.getTitle()));
+            UrlUtil.escapeXmlSpecialCharacters(out, image.getTitle());
             out.append("</image:title>\n");
         }
         if (image.getLicense() != null) {
             out.append("<image:license>");
-            out.append(UrlUtil.escapeXmlSpecialCharacters(image.getLicense()));
+            UrlUtil.escapeXmlSpecialCharacters(out, image.getLicense());
             out.append("</image:license>\n");
         }
         out.append("</image:image>\n");
@@ -129,33 +504,95 @@ public class SitemapGenerator extends AbstractSitemapGenerator<SitemapGenerator>
     protected String constructUrl(WebPage webPage) {
         StringBuilder out = new StringBuilder();
         out.append("<loc>");
-        out.append(getAbsoluteUrl(webPage.constructName()));
+        appendAbsoluteUrl(out, webPage.constructName());
         out.append("</loc>\n");
         if (webPage.getAlternateNames() != null) {
             for (Map.Entry<String, String> entry : webPage.getAlternateNames().entrySet()) {
                 out.append("<xhtml:link rel=\"alternate\" hreflang=\"");
-                out.append(UrlUtil.escapeXmlSpecialCharacters(entry.getKey()));
+                UrlUtil.escapeXmlSpecialCharacters(out, entry.getKey());
                 out.append("\" href=\"");
-                out.append(getAbsoluteUrl(entry.getValue()));
+                appendAbsoluteUrl(out, entry.getValue());
                 out.append("\"/>\n");
             }
         }
         if (webPage.getLastMod() != null) {
-            out.append("<lastmod>");
-            out.append(dateFormat.format(webPage.getLastMod()));
-            out.append("</lastmod>\n");
+            appendLastMod(out, webPage.getLastMod());
         }
         if (webPage.getChangeFreq() != null) {
-            out.append("<changefreq>");
-            out.append(webPage.getChangeFreq());
-            out.append("</changefreq>\n");
+            out.append(UrlElements.changeFreq(webPage.getChangeFreq()));
         }
         if (webPage.getPriority() != null) {
-            out.append("<priority>");
-            out.append(webPage.getPriority());
-            out.append("</priority>\n");
+            out.append(UrlElements.priority(webPage.getPriority()));
         }
         return out.toString();
     }
 
+    /**
+     * One sitemap file of sharded output, keeps track of number of URLs and bytes written into it
+     */
+    private static class ShardFile implements Closeable {
+
+        private final String fileName;
+
+        private final String dir;
+
+        private final int maxUrls;
+
+        private final long maxBytes;
+
+        private final byte[] footer;
+
+        private final OutputStream outputStream;
+
+        private int urls;
+
+        private long bytes;
+
+        private Date lastMod;
+
+        private ShardFile(String fileName, Sharding sharding, OutputStream outputStream, byte[] header, byte[] footer) throws IOException {
+            this.fileName = fileName;
+            this.dir = sharding.getDir();
+            this.maxUrls = sharding.getMaxUrls();
+            this.maxBytes = sharding.getMaxBytes();
+            this.footer = footer;
+            this.outputStream = outputStream;
+            outputStream.write(header);
+            bytes = header.length;
+        }
+
+        private boolean fits(int urlBytes) {
+            return urls < maxUrls && bytes + urlBytes + footer.length <= maxBytes;
+        }
+
+        private void write(byte[] url, Date urlLastMod) throws IOException {
+            outputStream.write(url);
+            bytes += url.length;
+            urls++;
+            if (urlLastMod != null && (lastMod == null || urlLastMod.after(lastMod))) {
+                lastMod = urlLastMod;
+            }
+        }
+
+        private void finish() throws IOException {
+            outputStream.write(footer);
+            bytes += footer.length;
+            outputStream.close();
+        }
+
+        private WebPage toWebPage() {
+            return WebPage.builder()
+                    .dir(dir)
+                    .name(fileName)
+                    .lastMod(lastMod)
+                    .build();
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+
+    }
+
 }
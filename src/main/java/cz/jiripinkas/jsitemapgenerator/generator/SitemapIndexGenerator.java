@@ -1,11 +1,16 @@
 package cz.jiripinkas.jsitemapgenerator.generator;
 
+import cz.jiripinkas.jsitemapgenerator.AbstractGenerator;
 import cz.jiripinkas.jsitemapgenerator.AbstractSitemapGenerator;
 import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.store.HashPageStore;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 /**
  * Sitemap index generator
@@ -27,6 +32,17 @@ public class SitemapIndexGenerator extends AbstractSitemapGenerator<SitemapIndex
         return new SitemapIndexGenerator(baseUrl);
     }
 
+    /**
+     * Collector which adds pages from (parallel) stream into new SitemapIndexGenerator, see {@link AbstractGenerator#collector(Supplier)}.
+     * Partial results use {@link HashPageStore}, so they're merged in linear time.
+     *
+     * @param baseUrl Base URL
+     * @return Collector
+     */
+    public static Collector<WebPage, ?, SitemapIndexGenerator> collector(String baseUrl) {
+        return collector(() -> SitemapIndexGenerator.of(baseUrl).pageStore(new HashPageStore()));
+    }
+
     /**
      * Construct sitemap to String array
      *
@@ -34,11 +50,11 @@ public class SitemapIndexGenerator extends AbstractSitemapGenerator<SitemapIndex
      */
     @Override
     public String[] toStringArray() {
+        resolveDeferredPages();
         List<String> out = new ArrayList<>();
         out.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         out.add("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
-        List<WebPage> values = new ArrayList<>(urls.values());
-        Collections.sort(values);
+        List<WebPage> values = urls.sortedValues();
         for (WebPage webPage : values) {
             out.add(constructUrl(webPage));
         }
@@ -46,6 +62,22 @@ public class SitemapIndexGenerator extends AbstractSitemapGenerator<SitemapIndex
         return out.toArray(new String[]{});
     }
 
+    /**
+     * Write sitemap index into writer sitemap by sitemap
+     *
+     * @param writer Writer
+     * @throws IOException when error
+     */
+    @Override
+    protected void writeSitemap(Writer writer) throws IOException {
+        resolveDeferredPages();
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        List<WebPage> values = urls.sortedValues();
+        writePages(writer, values, (entryWriter, webPage) -> entryWriter.write(constructUrl(webPage)));
+        writer.write("</sitemapindex>");
+    }
+
     /**
      * Construct URL from WebPage
      *
@@ -56,12 +88,10 @@ public class SitemapIndexGenerator extends AbstractSitemapGenerator<SitemapIndex
         StringBuilder out = new StringBuilder();
         out.append("<sitemap>\n");
         out.append("<loc>");
-        out.append(getAbsoluteUrl(webPage.constructName()));
+        appendAbsoluteUrl(out, webPage.constructName());
         out.append("</loc>\n");
         if (webPage.getLastMod() != null) {
-            out.append("<lastmod>");
-            out.append(dateFormat.format(webPage.getLastMod()));
-            out.append("</lastmod>\n");
+            appendLastMod(out, webPage.getLastMod());
         }
         out.append("</sitemap>\n");
         return out.toString();
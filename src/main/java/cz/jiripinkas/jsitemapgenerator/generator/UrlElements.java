@@ -0,0 +1,98 @@
+package cz.jiripinkas.jsitemapgenerator.generator;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pre-rendered changefreq and priority elements of sitemap url.
+ * Priorities 0.00, 0.01, ..., 1.00 are rendered in advance, other values are rendered when they're needed.
+ * Output is the same as output of {@link ChangeFreq#toString()} and {@link Double#toString(double)}.
+ */
+final class UrlElements {
+
+    private static final int PRIORITY_STEPS = 100;
+
+    private static final double[] PRIORITY_VALUES = new double[PRIORITY_STEPS + 1];
+
+    private static final String[] PRIORITIES = new String[PRIORITY_STEPS + 1];
+
+    private static final byte[][] PRIORITIES_UTF8 = new byte[PRIORITY_STEPS + 1][];
+
+    private static final String[] CHANGE_FREQS = new String[ChangeFreq.values().length];
+
+    private static final byte[][] CHANGE_FREQS_UTF8 = new byte[ChangeFreq.values().length][];
+
+    static {
+        for (int i = 0; i <= PRIORITY_STEPS; i++) {
+            // i / 100.0 is the same double as literal, for example 0.3
+            PRIORITY_VALUES[i] = i / (double) PRIORITY_STEPS;
+            PRIORITIES[i] = renderPriority(PRIORITY_VALUES[i]);
+            PRIORITIES_UTF8[i] = PRIORITIES[i].getBytes(StandardCharsets.UTF_8);
+        }
+        for (ChangeFreq changeFreq : ChangeFreq.values()) {
+            CHANGE_FREQS[changeFreq.ordinal()] = "<changefreq>" + changeFreq + "</changefreq>\n";
+            CHANGE_FREQS_UTF8[changeFreq.ordinal()] = CHANGE_FREQS[changeFreq.ordinal()].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private UrlElements() {
+    }
+
+    /**
+     * Get changefreq element
+     *
+     * @param changeFreq ChangeFreq
+     * @return "&lt;changefreq&gt;changeFreq&lt;/changefreq&gt;\n"
+     */
+    static String changeFreq(ChangeFreq changeFreq) {
+        return CHANGE_FREQS[changeFreq.ordinal()];
+    }
+
+    /**
+     * Get changefreq element encoded in UTF-8. Returned array is shared, it must not be modified.
+     *
+     * @param changeFreq ChangeFreq
+     * @return "&lt;changefreq&gt;changeFreq&lt;/changefreq&gt;\n" in UTF-8
+     */
+    static byte[] changeFreqUtf8(ChangeFreq changeFreq) {
+        return CHANGE_FREQS_UTF8[changeFreq.ordinal()];
+    }
+
+    /**
+     * Get priority element
+     *
+     * @param priority Priority
+     * @return "&lt;priority&gt;priority&lt;/priority&gt;\n"
+     */
+    static String priority(double priority) {
+        int index = priorityIndex(priority);
+        return index == -1 ? renderPriority(priority) : PRIORITIES[index];
+    }
+
+    /**
+     * Get priority element encoded in UTF-8. Returned array can be shared, it must not be modified.
+     *
+     * @param priority Priority
+     * @return "&lt;priority&gt;priority&lt;/priority&gt;\n" in UTF-8
+     */
+    static byte[] priorityUtf8(double priority) {
+        int index = priorityIndex(priority);
+        return index == -1 ? renderPriority(priority).getBytes(StandardCharsets.UTF_8) : PRIORITIES_UTF8[index];
+    }
+
+    private static int priorityIndex(double priority) {
+        int index = (int) (priority * PRIORITY_STEPS + 0.5);
+        // compare bits, -0.0 is rendered differently than 0.0
+        if (index >= 0 && index <= PRIORITY_STEPS
+                && Double.doubleToLongBits(PRIORITY_VALUES[index]) == Double.doubleToLongBits(priority)) {
+            return index;
+        }
+        return -1;
+    }
+
+    private static String renderPriority(double priority) {
+        return "<priority>" + priority + "</priority>\n";
+    }
+
+}
@@ -33,7 +33,7 @@ public class RobotsTxtGenerator {
 
     public String[] constructRobotsTxt() {
         List<String> out = new ArrayList<>();
-        sitemaps.forEach(sitemap -> out.add("Sitemap: " + UrlUtil.connectUrlParts(baseUrl, sitemap)));
+        sitemaps.forEach(sitemap -> out.add(UrlUtil.connectUrlParts(new StringBuilder("Sitemap: "), baseUrl, sitemap).toString()));
         rules.forEach(rule -> {
             out.add("User-agent: " + rule.getUserAgent());
             rule.getAllows().forEach(allow -> out.add("Allow: " + allow));
@@ -0,0 +1,101 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.Image;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.Map;
+
+/**
+ * Page record on heap. Unlike WebPage it stores lastMod and priority as primitives (with sentinel values),
+ * changeFreq as byte ordinal and alternate names and images as arrays which are allocated only when page has them.
+ */
+final class CompactPageRecord implements PageRecord {
+
+    private static final ChangeFreq[] CHANGE_FREQS = ChangeFreq.values();
+
+    private final String name;
+
+    private final long lastModMillis;
+
+    private final double priority;
+
+    private final byte changeFreq;
+
+    private final String[] alternateNames;
+
+    private final Image[] images;
+
+    CompactPageRecord(String name, long lastModMillis, ChangeFreq changeFreq, double priority) {
+        this(name, lastModMillis, changeFreq, priority, null, null);
+    }
+
+    private CompactPageRecord(String name, long lastModMillis, ChangeFreq changeFreq, double priority, String[] alternateNames, Image[] images) {
+        this.name = name;
+        this.lastModMillis = lastModMillis;
+        this.changeFreq = (byte) (changeFreq != null ? changeFreq.ordinal() : -1);
+        this.priority = priority;
+        this.alternateNames = alternateNames;
+        this.images = images;
+    }
+
+    /**
+     * Create record from page
+     *
+     * @param name    Name of page without leading "/" (see {@link PageRecords#name(WebPage, boolean)})
+     * @param webPage WebPage
+     * @return Record
+     */
+    static CompactPageRecord of(String name, WebPage webPage) {
+        String[] alternateNames = null;
+        if (webPage.getAlternateNames() != null) {
+            alternateNames = new String[webPage.getAlternateNames().size() * 2];
+            int i = 0;
+            for (Map.Entry<String, String> entry : webPage.getAlternateNames().entrySet()) {
+                alternateNames[i++] = entry.getKey();
+                alternateNames[i++] = entry.getValue();
+            }
+        }
+        Image[] images = null;
+        if (webPage.getImages() != null) {
+            images = webPage.getImages().toArray(new Image[0]);
+        }
+        return new CompactPageRecord(name,
+                webPage.getLastMod() != null ? webPage.getLastMod().getTime() : NO_LAST_MOD,
+                webPage.getChangeFreq(),
+                webPage.getPriority() != null ? webPage.getPriority() : Double.NaN,
+                alternateNames,
+                images);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getLastModMillis() {
+        return lastModMillis;
+    }
+
+    @Override
+    public ChangeFreq getChangeFreq() {
+        return changeFreq >= 0 ? CHANGE_FREQS[changeFreq] : null;
+    }
+
+    @Override
+    public double getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String[] getAlternateNames() {
+        return alternateNames;
+    }
+
+    @Override
+    public Image[] getImages() {
+        return images;
+    }
+
+}
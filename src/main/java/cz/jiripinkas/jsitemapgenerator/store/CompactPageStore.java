@@ -0,0 +1,130 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store which keeps pages as compact records on heap. Record stores lastMod and priority as primitives,
+ * changeFreq as byte and alternate names and images as arrays allocated only when page has them,
+ * records are keyed by name of page (absolute URL isn't stored). Retained heap per page is much smaller
+ * than with WebPage objects, SitemapGenerator renders sitemap directly from records.
+ * <p>
+ * Pages with shortName or shortDescription (used by RssGenerator) are rejected.
+ * Changes of WebPage objects which were already added aren't reflected in records.
+ * Order of rendered pages is the same as order of {@link SortedPageStore}.
+ */
+public class CompactPageStore implements PageRecordStore {
+
+    private final Map<String, CompactPageRecord> records;
+
+    private int recordsWithImages;
+
+    private int recordsWithAlternateNames;
+
+    private String urlPrefix;
+
+    public CompactPageStore() {
+        records = new HashMap<>();
+    }
+
+    /**
+     * Create page store for expected number of pages, so that it's never resized
+     *
+     * @param expectedSize Expected number of pages
+     */
+    public CompactPageStore(int expectedSize) {
+        records = new HashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        String name = PageRecords.name(webPage, true);
+        urlPrefix = PageRecords.urlPrefix(urlPrefix, url, name);
+        CompactPageRecord record = CompactPageRecord.of(name, webPage);
+        count(record, 1);
+        CompactPageRecord replacedRecord = records.put(name, record);
+        if (replacedRecord == null) {
+            return null;
+        }
+        count(replacedRecord, -1);
+        return replacedRecord.toWebPage();
+    }
+
+    private void count(CompactPageRecord record, int increment) {
+        if (record.getImages() != null) {
+            recordsWithImages += increment;
+        }
+        if (record.getAlternateNames() != null) {
+            recordsWithAlternateNames += increment;
+        }
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return new AbstractCollection<WebPage>() {
+            @Override
+            public Iterator<WebPage> iterator() {
+                Iterator<CompactPageRecord> iterator = records.values().iterator();
+                return new Iterator<WebPage>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public WebPage next() {
+                        return iterator.next().toWebPage();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return records.size();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        records.forEach((name, record) -> action.accept(urlPrefix + name, record.toWebPage()));
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        List<WebPage> values = new ArrayList<>(records.size());
+        sortedRecords().forEachRemaining(record -> values.add(record.toWebPage()));
+        return values;
+    }
+
+    @Override
+    public Iterator<PageRecord> sortedRecords() {
+        List<PageRecord> sortedRecords = new ArrayList<>(records.values());
+        sortedRecords.sort(PageRecords.RENDER_ORDER);
+        return sortedRecords.iterator();
+    }
+
+    @Override
+    public boolean hasImages() {
+        return recordsWithImages > 0;
+    }
+
+    @Override
+    public boolean hasAlternateNames() {
+        return recordsWithAlternateNames > 0;
+    }
+
+}
@@ -0,0 +1,77 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Thread-safe page store, pages can be added by many threads at once (for example by parallel loaders)
+ * without external lock. Pages are kept in ConcurrentHashMap, which locks only single bins when pages are added,
+ * and they're sorted (in parallel) when sitemap is rendered. Order of rendered pages doesn't depend on order
+ * in which threads added them, it's the same as order of {@link SortedPageStore}:
+ * by {@link WebPage#compareTo(WebPage)}, pages which are equal by URL.
+ * <p>
+ * Sitemap which is rendered while pages are added contains some of the pages which are being added.
+ * Added WebPage objects must not be changed by other threads.
+ */
+public class ConcurrentPageStore implements PageStore {
+
+    private static final Comparator<Map.Entry<String, WebPage>> RENDER_ORDER =
+            Map.Entry.<String, WebPage>comparingByValue().thenComparing(Map.Entry.comparingByKey());
+
+    private final Map<String, WebPage> pages;
+
+    public ConcurrentPageStore() {
+        pages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create page store for expected number of pages, so that it's never resized
+     *
+     * @param expectedSize Expected number of pages
+     */
+    public ConcurrentPageStore(int expectedSize) {
+        pages = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        return pages.put(url, webPage);
+    }
+
+    @Override
+    public int size() {
+        return pages.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        pages.forEach(action);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<WebPage> sortedValues() {
+        Map.Entry<String, WebPage>[] entries = (Map.Entry<String, WebPage>[]) pages.entrySet().toArray(new Map.Entry<?, ?>[0]);
+        Arrays.parallelSort(entries, RENDER_ORDER);
+        List<WebPage> values = new ArrayList<>(entries.length);
+        for (Map.Entry<String, WebPage> entry : entries) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,66 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store which keeps pages in HashMap. Adding page takes constant time,
+ * pages are sorted only once when sitemap is rendered. Order of rendered pages is the same
+ * as order of {@link SortedPageStore}: by {@link WebPage#compareTo(WebPage)}, pages which are equal by URL.
+ */
+public class HashPageStore implements PageStore {
+
+    private final Map<String, WebPage> pages;
+
+    public HashPageStore() {
+        pages = new HashMap<>();
+    }
+
+    /**
+     * Create page store for expected number of pages, so that it's never resized
+     *
+     * @param expectedSize Expected number of pages
+     */
+    public HashPageStore(int expectedSize) {
+        pages = new HashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        return pages.put(url, webPage);
+    }
+
+    @Override
+    public int size() {
+        return pages.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        pages.forEach(action);
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        List<Map.Entry<String, WebPage>> entries = new ArrayList<>(pages.entrySet());
+        entries.sort(Map.Entry.<String, WebPage>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        List<WebPage> values = new ArrayList<>(entries.size());
+        for (Map.Entry<String, WebPage> entry : entries) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+
+}
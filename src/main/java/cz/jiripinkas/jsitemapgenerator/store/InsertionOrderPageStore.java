@@ -0,0 +1,60 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store which renders pages in the order in which they were added, pages aren't sorted at all.
+ * Use it when pages are added already sorted (for example from database query with ORDER BY).
+ * Page which replaces page with the same URL keeps position of the replaced page.
+ */
+public class InsertionOrderPageStore implements PageStore {
+
+    private final Map<String, WebPage> pages;
+
+    public InsertionOrderPageStore() {
+        pages = new LinkedHashMap<>();
+    }
+
+    /**
+     * Create page store for expected number of pages, so that it's never resized
+     *
+     * @param expectedSize Expected number of pages
+     */
+    public InsertionOrderPageStore(int expectedSize) {
+        pages = new LinkedHashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        return pages.put(url, webPage);
+    }
+
+    @Override
+    public int size() {
+        return pages.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        pages.forEach(action);
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        return new ArrayList<>(pages.values());
+    }
+
+}
@@ -0,0 +1,409 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store which keeps pages outside of Java heap, so that sitemap with millions of pages
+ * doesn't need gigabytes of heap and doesn't cause long garbage collections.
+ * Every page is stored as record in direct ByteBuffer (allocated in chunks of 1 MB):
+ * UTF-8 name, lastMod in milliseconds, changeFreq ordinal and priority. Heap contains only
+ * index of records (about 16 bytes per page). SitemapGenerator renders sitemap directly from records.
+ * <p>
+ * Only name, lastMod, changeFreq and priority of page are stored, pages with images, alternate names,
+ * shortName or shortDescription are rejected. Order of rendered pages is the same as order of {@link SortedPageStore}.
+ * Direct memory is limited by JVM option -XX:MaxDirectMemorySize and it's released when store is garbage collected.
+ */
+public class OffHeapPageStore implements PageRecordStore {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    // record layout
+    private static final int HASH = 0;
+    private static final int NAME_LENGTH = 4;
+    private static final int LAST_MOD = 8;
+    private static final int PRIORITY = 16;
+    private static final int CHANGE_FREQ = 24;
+    private static final int NAME = 25;
+
+    private static final ChangeFreq[] CHANGE_FREQS = ChangeFreq.values();
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Chunk into which new records are written, its position is end of the last record
+     */
+    private ByteBuffer chunk;
+
+    /**
+     * Record id -&gt; chunk index &lt;&lt; 32 | offset of record in chunk
+     */
+    private long[] addresses;
+
+    /**
+     * Open addressing hash table of record ids + 1, 0 is empty slot
+     */
+    private int[] table;
+
+    private int size;
+
+    /**
+     * Part of URL which precedes name of page (base URL)
+     */
+    private String urlPrefix;
+
+    public OffHeapPageStore() {
+        this(16);
+    }
+
+    /**
+     * Create page store for expected number of pages, so that its index is never resized
+     *
+     * @param expectedSize Expected number of pages
+     */
+    public OffHeapPageStore(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        addresses = new long[Math.max(expectedSize, 16)];
+        int capacity = 16;
+        // load factor is at most 0.5
+        while (capacity < 2L * expectedSize) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        String name = PageRecords.name(webPage, false);
+        urlPrefix = PageRecords.urlPrefix(urlPrefix, url, name);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(nameBytes);
+        int slot = findSlot(nameBytes, hash);
+        if (table[slot] != 0) {
+            int id = table[slot] - 1;
+            WebPage replacedWebPage = new Record().at(id).toWebPage();
+            writeAttributes(addresses[id], webPage);
+            return replacedWebPage;
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        long address = allocate(NAME + nameBytes.length);
+        ByteBuffer buffer = chunks.get(chunkIndex(address));
+        int offset = offset(address);
+        buffer.putInt(offset + HASH, hash);
+        buffer.putInt(offset + NAME_LENGTH, nameBytes.length);
+        buffer.put(offset + NAME, nameBytes);
+        writeAttributes(address, webPage);
+        addresses[size] = address;
+        table[slot] = ++size;
+        if (2L * size > table.length) {
+            rehash();
+        }
+        return null;
+    }
+
+    private void writeAttributes(long address, WebPage webPage) {
+        ByteBuffer buffer = chunks.get(chunkIndex(address));
+        int offset = offset(address);
+        buffer.putLong(offset + LAST_MOD, webPage.getLastMod() != null ? webPage.getLastMod().getTime() : PageRecord.NO_LAST_MOD);
+        buffer.putDouble(offset + PRIORITY, webPage.getPriority() != null ? webPage.getPriority() : Double.NaN);
+        buffer.put(offset + CHANGE_FREQ, (byte) (webPage.getChangeFreq() != null ? webPage.getChangeFreq().ordinal() : -1));
+    }
+
+    private long allocate(int length) {
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length));
+            chunks.add(chunk);
+        }
+        int offset = chunk.position();
+        chunk.position(offset + length);
+        return (long) (chunks.size() - 1) << 32 | offset;
+    }
+
+    private static int chunkIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private int findSlot(byte[] nameBytes, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0 && !nameEquals(addresses[table[slot] - 1], nameBytes, hash)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean nameEquals(long address, byte[] nameBytes, int hash) {
+        ByteBuffer buffer = chunks.get(chunkIndex(address));
+        int offset = offset(address);
+        if (buffer.getInt(offset + HASH) != hash || buffer.getInt(offset + NAME_LENGTH) != nameBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < nameBytes.length; i++) {
+            if (buffer.get(offset + NAME + i) != nameBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            long address = addresses[id];
+            int slot = chunks.get(chunkIndex(address)).getInt(offset(address) + HASH) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return new AbstractCollection<WebPage>() {
+            @Override
+            public Iterator<WebPage> iterator() {
+                return new WebPageIterator(null);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        Record record = new Record();
+        for (int id = 0; id < size; id++) {
+            record.at(id);
+            action.accept(urlPrefix + record.getName(), record.toWebPage());
+        }
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        List<WebPage> values = new ArrayList<>(size);
+        new WebPageIterator(sortedIds()).forEachRemaining(values::add);
+        return values;
+    }
+
+    @Override
+    public Iterator<PageRecord> sortedRecords() {
+        int[] ids = sortedIds();
+        Record record = new Record();
+        return new Iterator<PageRecord>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < ids.length;
+            }
+
+            @Override
+            public PageRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return record.at(ids[index++]);
+            }
+        };
+    }
+
+    /**
+     * Ids of records sorted by priority (in descending order, records without priority are at the end), then by URL
+     */
+    private int[] sortedIds() {
+        int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+        }
+        // merge sort of primitive ids, so that sorting doesn't create object for every page
+        mergeSort(ids, ids.clone(), 0, size);
+        return ids;
+    }
+
+    /**
+     * Sort ids[from, to), buffer must contain the same ids as ids
+     */
+    private void mergeSort(int[] ids, int[] buffer, int from, int to) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int id = ids[i];
+                int j = i - 1;
+                while (j >= from && compare(ids[j], id) > 0) {
+                    ids[j + 1] = ids[j];
+                    j--;
+                }
+                ids[j + 1] = id;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        // halves are sorted in buffer and merged into ids
+        mergeSort(buffer, ids, from, middle);
+        mergeSort(buffer, ids, middle, to);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right]) <= 0)) {
+                ids[i] = buffer[left++];
+            } else {
+                ids[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compare(int id1, int id2) {
+        long address1 = addresses[id1];
+        long address2 = addresses[id2];
+        ByteBuffer buffer1 = chunks.get(chunkIndex(address1));
+        ByteBuffer buffer2 = chunks.get(chunkIndex(address2));
+        int offset1 = offset(address1);
+        int offset2 = offset(address2);
+        double priority1 = buffer1.getDouble(offset1 + PRIORITY);
+        double priority2 = buffer2.getDouble(offset2 + PRIORITY);
+        if (Double.isNaN(priority1) != Double.isNaN(priority2)) {
+            return Double.isNaN(priority1) ? 1 : -1;
+        }
+        int result = Double.compare(priority2, priority1);
+        if (result != 0) {
+            return result;
+        }
+        return compareNames(buffer1, offset1, buffer2, offset2);
+    }
+
+    /**
+     * Compare UTF-8 names in the same order as {@link String#compareTo(String)} (UTF-16 order)
+     */
+    private static int compareNames(ByteBuffer buffer1, int offset1, ByteBuffer buffer2, int offset2) {
+        int length1 = buffer1.getInt(offset1 + NAME_LENGTH);
+        int length2 = buffer2.getInt(offset2 + NAME_LENGTH);
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            int b1 = buffer1.get(offset1 + NAME + i) & 0xFF;
+            int b2 = buffer2.get(offset2 + NAME + i) & 0xFF;
+            if (b1 != b2) {
+                // UTF-8 is in code point order, which differs from UTF-16 order only for characters U+E000 - U+FFFF
+                // (lead bytes 0xEE, 0xEF) and supplementary characters (lead bytes 0xF0 - 0xF4), which are
+                // surrogates U+D800 - U+DFFF in UTF-16, so they're first
+                if (b1 >= 0xEE && b2 >= 0xEE) {
+                    b1 = b1 >= 0xF0 ? b1 - 0x10 : b1;
+                    b2 = b2 >= 0xF0 ? b2 - 0x10 : b2;
+                }
+                return b1 - b2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     * View of record, it's moved from record to record, so that iteration doesn't create objects
+     */
+    private class Record implements PageRecord {
+
+        private ByteBuffer buffer;
+
+        private int offset;
+
+        private Record at(int id) {
+            long address = addresses[id];
+            buffer = chunks.get(chunkIndex(address));
+            offset = offset(address);
+            return this;
+        }
+
+        @Override
+        public String getName() {
+            byte[] nameBytes = new byte[buffer.getInt(offset + NAME_LENGTH)];
+            buffer.get(offset + NAME, nameBytes);
+            return new String(nameBytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long getLastModMillis() {
+            return buffer.getLong(offset + LAST_MOD);
+        }
+
+        @Override
+        public ChangeFreq getChangeFreq() {
+            byte changeFreq = buffer.get(offset + CHANGE_FREQ);
+            return changeFreq >= 0 ? CHANGE_FREQS[changeFreq] : null;
+        }
+
+        @Override
+        public double getPriority() {
+            return buffer.getDouble(offset + PRIORITY);
+        }
+    }
+
+    /**
+     * Iterator which creates WebPage from every record
+     */
+    private class WebPageIterator implements Iterator<WebPage> {
+
+        private final int[] ids;
+
+        private final Record record = new Record();
+
+        private int index;
+
+        /**
+         * @param ids Ids of records, null iterates all records in the order in which they were added
+         */
+        private WebPageIterator(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < (ids != null ? ids.length : size);
+        }
+
+        @Override
+        public WebPage next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int id = ids != null ? ids[index] : index;
+            index++;
+            return record.at(id).toWebPage();
+        }
+    }
+
+}
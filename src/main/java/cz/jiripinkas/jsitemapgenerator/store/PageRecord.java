@@ -0,0 +1,98 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.Image;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Page stored in {@link PageRecordStore} as compact record instead of WebPage object.
+ * Record contains name, lastMod, changeFreq, priority and optionally alternate names and images of page.
+ */
+public interface PageRecord {
+
+    /**
+     * Value of {@link #getLastModMillis()} when page doesn't have lastMod
+     */
+    long NO_LAST_MOD = Long.MIN_VALUE;
+
+    /**
+     * Name of page (see {@link WebPage#constructName()}) without leading "/"
+     *
+     * @return Name
+     */
+    String getName();
+
+    /**
+     * LastMod in milliseconds since epoch
+     *
+     * @return LastMod, or {@link #NO_LAST_MOD}
+     */
+    long getLastModMillis();
+
+    /**
+     * Change frequency
+     *
+     * @return Change frequency, or null
+     */
+    ChangeFreq getChangeFreq();
+
+    /**
+     * Priority
+     *
+     * @return Priority, or NaN when page doesn't have priority
+     */
+    double getPriority();
+
+    /**
+     * Alternate names as flat array: language, name, language, name, ... Returned array must not be modified.
+     *
+     * @return Alternate names, or null
+     */
+    default String[] getAlternateNames() {
+        return null;
+    }
+
+    /**
+     * Images. Returned array must not be modified.
+     *
+     * @return Images, or null
+     */
+    default Image[] getImages() {
+        return null;
+    }
+
+    /**
+     * Create WebPage from record
+     *
+     * @return WebPage
+     */
+    default WebPage toWebPage() {
+        WebPage webPage = WebPage.of(getName());
+        long lastMod = getLastModMillis();
+        if (lastMod != NO_LAST_MOD) {
+            webPage.setLastMod(new Date(lastMod));
+        }
+        webPage.setChangeFreq(getChangeFreq());
+        double priority = getPriority();
+        if (!Double.isNaN(priority)) {
+            webPage.setPriority(priority);
+        }
+        String[] alternateNames = getAlternateNames();
+        if (alternateNames != null) {
+            webPage.setAlternateNames(new HashMap<>());
+            for (int i = 0; i < alternateNames.length; i += 2) {
+                webPage.addAlternateName(alternateNames[i], alternateNames[i + 1]);
+            }
+        }
+        if (getImages() != null) {
+            webPage.setImages(new ArrayList<>(Arrays.asList(getImages())));
+        }
+        return webPage;
+    }
+
+}
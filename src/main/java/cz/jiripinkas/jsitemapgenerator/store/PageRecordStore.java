@@ -0,0 +1,39 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import java.util.Iterator;
+
+/**
+ * Page store which keeps pages as records, generators render sitemap directly from records
+ * without creating WebPage objects. Methods of {@link PageStore} which return WebPage objects
+ * create them from records.
+ */
+public interface PageRecordStore extends PageStore {
+
+    /**
+     * Records in the order in which they're rendered into sitemap (same order as {@link #sortedValues()}).
+     * Iterator can return the same PageRecord instance for every record, so record must not be used
+     * after next record is returned. Store must not be modified during iteration.
+     *
+     * @return Iterator of sorted records
+     */
+    Iterator<PageRecord> sortedRecords();
+
+    /**
+     * Check if any record has images
+     *
+     * @return true if any record has images
+     */
+    default boolean hasImages() {
+        return false;
+    }
+
+    /**
+     * Check if any record has alternate names
+     *
+     * @return true if any record has alternate names
+     */
+    default boolean hasAlternateNames() {
+        return false;
+    }
+
+}
@@ -0,0 +1,76 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.Comparator;
+
+/**
+ * Helper methods of page stores which keep pages as {@link PageRecord}
+ */
+final class PageRecords {
+
+    /**
+     * Order in which records are rendered, same as order of {@link SortedPageStore}:
+     * by priority (in descending order, records without priority are at the end), then by name
+     */
+    static final Comparator<PageRecord> RENDER_ORDER = (record1, record2) -> {
+        double priority1 = record1.getPriority();
+        double priority2 = record2.getPriority();
+        if (Double.isNaN(priority1) != Double.isNaN(priority2)) {
+            return Double.isNaN(priority1) ? 1 : -1;
+        }
+        int result = Double.compare(priority2, priority1);
+        return result != 0 ? result : record1.getName().compareTo(record2.getName());
+    };
+
+    private PageRecords() {
+    }
+
+    /**
+     * Name of page without leading "/". Page without name is stored with empty name, so it's rendered
+     * as base URL (same as in {@link SortedPageStore}). Page must not contain data which record doesn't store.
+     *
+     * @param webPage                 WebPage
+     * @param imagesAndAlternateNames true if record stores images and alternate names
+     * @return Name
+     */
+    static String name(WebPage webPage, boolean imagesAndAlternateNames) {
+        if (!imagesAndAlternateNames && (webPage.getImages() != null || webPage.getAlternateNames() != null)) {
+            throw new IllegalArgumentException("Page record contains only name, lastMod, changeFreq and priority of page, page "
+                    + webPage.constructName() + " has images or alternate names");
+        }
+        if (webPage.getShortName() != null || webPage.getShortDescription() != null) {
+            throw new IllegalArgumentException("Page record doesn't contain shortName and shortDescription of page, page "
+                    + webPage.constructName() + " has shortName or shortDescription");
+        }
+        String name = webPage.constructName();
+        if (name == null) {
+            return "";
+        }
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '/') {
+            start++;
+        }
+        return name.substring(start);
+    }
+
+    /**
+     * Check that URL consists of base URL (which is the same for all pages) and name of page
+     *
+     * @param urlPrefix Base URL of pages which were already added, or null
+     * @param url       URL of page
+     * @param name      Name of page without leading "/"
+     * @return Base URL
+     */
+    static String urlPrefix(String urlPrefix, String url, String name) {
+        if (urlPrefix == null && url.endsWith(name)) {
+            urlPrefix = url.substring(0, url.length() - name.length());
+        }
+        if (urlPrefix == null || url.length() != urlPrefix.length() + name.length()
+                || !url.startsWith(urlPrefix) || !url.endsWith(name)) {
+            throw new IllegalArgumentException("Url " + url + " doesn't consist of base URL " + urlPrefix + " and name of page " + name);
+        }
+        return urlPrefix;
+    }
+
+}
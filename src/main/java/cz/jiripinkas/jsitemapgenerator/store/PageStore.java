@@ -0,0 +1,71 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Store of pages added to generator, keyed by absolute URL of page.
+ * Implementations differ in cost of adding pages and of sorting them before rendering:
+ * <ul>
+ * <li>{@link SortedPageStore} (default) keeps pages sorted by URL</li>
+ * <li>{@link HashPageStore} adds pages in constant time and sorts them once when sitemap is rendered</li>
+ * <li>{@link InsertionOrderPageStore} renders pages in the order in which they were added (for pages which are already sorted)</li>
+ * <li>{@link ConcurrentPageStore} is thread-safe, pages can be added by many threads at once</li>
+ * <li>{@link CompactPageStore} keeps pages as compact records, which need much less heap than WebPage objects</li>
+ * <li>{@link OffHeapPageStore} keeps pages outside of Java heap (for sitemaps with millions of pages)</li>
+ * <li>{@link SpillingPageStore} spills pages into temporary files (for sitemaps which don't fit into memory)</li>
+ * </ul>
+ * Implementations don't have to be thread-safe, except for {@link ConcurrentPageStore}.
+ */
+public interface PageStore {
+
+    /**
+     * Add page. If store already contains page with the same URL, it's replaced.
+     *
+     * @param url     Absolute URL of page
+     * @param webPage WebPage
+     * @return Replaced page, or null
+     */
+    WebPage put(String url, WebPage webPage);
+
+    /**
+     * Number of pages
+     *
+     * @return Number of pages
+     */
+    int size();
+
+    /**
+     * Check if store is empty
+     *
+     * @return true if store doesn't contain any page
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * All pages in store-specific order
+     *
+     * @return Pages
+     */
+    Collection<WebPage> values();
+
+    /**
+     * Call action for every URL and its page in store-specific order
+     *
+     * @param action Action
+     */
+    void forEach(BiConsumer<String, WebPage> action);
+
+    /**
+     * Pages in the order in which they're rendered into sitemap. Returned list can be modified.
+     *
+     * @return Sorted pages
+     */
+    List<WebPage> sortedValues();
+
+}
@@ -0,0 +1,50 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store which keeps pages sorted by URL (in TreeMap). Adding page takes O(log n).
+ * Rendered pages are sorted using {@link WebPage#compareTo(WebPage)}, pages which are equal are sorted by URL.
+ * This is the default page store.
+ */
+public class SortedPageStore implements PageStore {
+
+    private final Map<String, WebPage> pages = new TreeMap<>();
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        return pages.put(url, webPage);
+    }
+
+    @Override
+    public int size() {
+        return pages.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        pages.forEach(action);
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        List<WebPage> values = new ArrayList<>(pages.values());
+        // sort is stable, pages which are equal stay sorted by URL
+        Collections.sort(values);
+        return values;
+    }
+
+}
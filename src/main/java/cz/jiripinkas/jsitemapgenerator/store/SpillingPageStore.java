@@ -0,0 +1,462 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Page store for sitemaps which don't fit into memory. Only limited number of pages is kept in memory,
+ * when the limit is reached, pages are sorted and spilled into temporary file (run) in compact binary format.
+ * When sitemap is rendered, runs are merged (which removes replaced pages) and sorted in bounded memory
+ * by external merge sort, SitemapGenerator streams merged pages directly into sitemap files
+ * (see {@link cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator#toShardedFiles}).
+ * <p>
+ * Only name, lastMod, changeFreq and priority of page are stored, pages with images, alternate names,
+ * shortName or shortDescription are rejected. Order of rendered pages is the same as order of {@link SortedPageStore}.
+ * Page which replaces already spilled page is detected when sitemap is rendered, until then {@link #size()} counts both pages
+ * and {@link #put(String, WebPage)} returns null.
+ * At most {@link #MAX_FAN_IN} runs are merged at once (open files and read buffers are bounded),
+ * more runs are merged in several passes.
+ * <p>
+ * The first rendering after pages were added ({@link #sortedRecords()}, {@link #values()}, {@link #forEach(BiConsumer)}
+ * or {@link #sortedValues()}) rewrites all runs on disk and closes iterators which were returned before.
+ * Next renderings reuse merged runs until another page is added.
+ * Temporary files are deleted by {@link #close()}.
+ */
+public class SpillingPageStore implements PageRecordStore, Closeable {
+
+    /**
+     * Max. number of runs which are merged at once
+     */
+    public static final int MAX_FAN_IN = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ChangeFreq[] CHANGE_FREQS = ChangeFreq.values();
+
+    private static final Comparator<PageRecord> NAME_ORDER = Comparator.comparing(PageRecord::getName);
+
+    private final int maxPagesInMemory;
+
+    private final Path directory;
+
+    private Map<String, CompactPageRecord> pages = new HashMap<>();
+
+    /**
+     * Runs sorted by name, later run contains pages which were added later
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * Runs sorted in render order, created by the last rendering
+     */
+    private final List<Path> renderRuns = new ArrayList<>();
+
+    /**
+     * True when render runs contain all pages, so they can be merged again without rewriting
+     */
+    private boolean renderRunsValid;
+
+    /**
+     * Iterators which merge render runs, they're closed when render runs are deleted
+     */
+    private final List<MergeIterator> renderIterators = new ArrayList<>();
+
+    private int spilledSize;
+
+    private String urlPrefix;
+
+    /**
+     * Create page store which writes temporary files into default temporary directory
+     *
+     * @param maxPagesInMemory Max. number of pages kept in memory
+     */
+    public SpillingPageStore(int maxPagesInMemory) {
+        this(maxPagesInMemory, null);
+    }
+
+    /**
+     * Create page store
+     *
+     * @param maxPagesInMemory Max. number of pages kept in memory
+     * @param directory        Directory of temporary files, null means default temporary directory
+     */
+    public SpillingPageStore(int maxPagesInMemory, Path directory) {
+        if (maxPagesInMemory < 1) {
+            throw new IllegalArgumentException("Max. number of pages in memory must be at least 1");
+        }
+        this.maxPagesInMemory = maxPagesInMemory;
+        this.directory = directory;
+    }
+
+    @Override
+    public WebPage put(String url, WebPage webPage) {
+        String name = PageRecords.name(webPage, false);
+        urlPrefix = PageRecords.urlPrefix(urlPrefix, url, name);
+        CompactPageRecord replacedRecord = pages.put(name, CompactPageRecord.of(name, webPage));
+        renderRunsValid = false;
+        if (pages.size() >= maxPagesInMemory) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return replacedRecord != null ? replacedRecord.toWebPage() : null;
+    }
+
+    private void spill() throws IOException {
+        List<CompactPageRecord> records = new ArrayList<>(pages.values());
+        records.sort(NAME_ORDER);
+        Path run = newRun();
+        runs.add(run);
+        try (RunWriter runWriter = new RunWriter(run)) {
+            for (CompactPageRecord record : records) {
+                runWriter.write(record);
+            }
+        }
+        spilledSize += records.size();
+        pages = new HashMap<>();
+    }
+
+    private Path newRun() throws IOException {
+        return directory != null
+                ? Files.createTempFile(directory, "sitemap-", ".run")
+                : Files.createTempFile("sitemap-", ".run");
+    }
+
+    @Override
+    public int size() {
+        return spilledSize + pages.size();
+    }
+
+    @Override
+    public Collection<WebPage> values() {
+        return new AbstractCollection<WebPage>() {
+            @Override
+            public Iterator<WebPage> iterator() {
+                Iterator<PageRecord> records = sortedRecords();
+                return new Iterator<WebPage>() {
+                    @Override
+                    public boolean hasNext() {
+                        return records.hasNext();
+                    }
+
+                    @Override
+                    public WebPage next() {
+                        return records.next().toWebPage();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SpillingPageStore.this.size();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, WebPage> action) {
+        for (Iterator<PageRecord> records = sortedRecords(); records.hasNext(); ) {
+            PageRecord record = records.next();
+            action.accept(urlPrefix + record.getName(), record.toWebPage());
+        }
+    }
+
+    @Override
+    public List<WebPage> sortedValues() {
+        List<WebPage> values = new ArrayList<>(size());
+        values().forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Sorted records. If pages were spilled, records are merged from temporary files,
+     * {@link UncheckedIOException} is thrown when they can't be read.
+     *
+     * @return Iterator of sorted records
+     */
+    @Override
+    public Iterator<PageRecord> sortedRecords() {
+        if (runs.isEmpty()) {
+            List<PageRecord> records = new ArrayList<>(pages.values());
+            records.sort(PageRecords.RENDER_ORDER);
+            return records.iterator();
+        }
+        try {
+            if (!renderRunsValid) {
+                mergeRuns();
+            }
+            renderIterators.removeIf(iterator -> !iterator.hasNext());
+            MergeIterator renderIterator = new MergeIterator(renderRuns, PageRecords.RENDER_ORDER);
+            renderIterators.add(renderIterator);
+            return renderIterator;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merge runs by name, which removes replaced pages. Result is written into single run (which is merged next time)
+     * and into runs sorted in render order (at most {@link #MAX_FAN_IN} of them).
+     */
+    private void mergeRuns() throws IOException {
+        closeRenderIterators();
+        if (!pages.isEmpty()) {
+            spill();
+        }
+        deleteRuns(renderRuns);
+        reduceRuns(runs, NAME_ORDER);
+        Path compactedRun = newRun();
+        int count = 0;
+        try (MergeIterator merged = new MergeIterator(runs, NAME_ORDER);
+             RunWriter compactedRunWriter = new RunWriter(compactedRun)) {
+            List<PageRecord> batch = new ArrayList<>(Math.min(maxPagesInMemory, spilledSize));
+            while (merged.hasNext()) {
+                PageRecord record = merged.next();
+                compactedRunWriter.write(record);
+                count++;
+                batch.add(record);
+                if (batch.size() == maxPagesInMemory || !merged.hasNext()) {
+                    batch.sort(PageRecords.RENDER_ORDER);
+                    Path renderRun = newRun();
+                    renderRuns.add(renderRun);
+                    try (RunWriter runWriter = new RunWriter(renderRun)) {
+                        for (PageRecord batchRecord : batch) {
+                            runWriter.write(batchRecord);
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(compactedRun);
+            throw e;
+        }
+        deleteRuns(runs);
+        runs.add(compactedRun);
+        spilledSize = count;
+        reduceRuns(renderRuns, PageRecords.RENDER_ORDER);
+        renderRunsValid = true;
+    }
+
+    /**
+     * Merge groups of {@link #MAX_FAN_IN} consecutive runs into single run until there are at most MAX_FAN_IN runs.
+     * Merged run takes position of its group, so pages from later runs still replace pages from earlier runs.
+     */
+    private void reduceRuns(List<Path> runs, Comparator<PageRecord> comparator) throws IOException {
+        while (runs.size() > MAX_FAN_IN) {
+            List<Path> reduced = new ArrayList<>(runs.size() / MAX_FAN_IN + 1);
+            for (int start = 0; start < runs.size(); start += MAX_FAN_IN) {
+                List<Path> group = runs.subList(start, Math.min(runs.size(), start + MAX_FAN_IN));
+                if (group.size() == 1) {
+                    reduced.add(group.get(0));
+                    continue;
+                }
+                Path mergedRun = newRun();
+                try (MergeIterator merged = new MergeIterator(group, comparator);
+                     RunWriter runWriter = new RunWriter(mergedRun)) {
+                    while (merged.hasNext()) {
+                        runWriter.write(merged.next());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(mergedRun);
+                    throw e;
+                }
+                reduced.add(mergedRun);
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+            }
+            runs.clear();
+            runs.addAll(reduced);
+        }
+    }
+
+    private void closeRenderIterators() throws IOException {
+        for (MergeIterator renderIterator : renderIterators) {
+            renderIterator.close();
+        }
+        renderIterators.clear();
+    }
+
+    private static void deleteRuns(List<Path> runs) throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    /**
+     * Delete temporary files and remove all pages
+     *
+     * @throws IOException when error
+     */
+    @Override
+    public void close() throws IOException {
+        closeRenderIterators();
+        renderRunsValid = false;
+        deleteRuns(runs);
+        deleteRuns(renderRuns);
+        pages = new HashMap<>();
+        spilledSize = 0;
+    }
+
+    /**
+     * Writes records into run. Record: UTF-8 name length, name, lastMod, priority, changeFreq ordinal.
+     * Run ends with name length -1.
+     */
+    private static class RunWriter implements Closeable {
+
+        private final DataOutputStream outputStream;
+
+        private RunWriter(Path run) throws IOException {
+            outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE));
+        }
+
+        private void write(PageRecord record) throws IOException {
+            byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+            outputStream.writeInt(name.length);
+            outputStream.write(name);
+            outputStream.writeLong(record.getLastModMillis());
+            outputStream.writeDouble(record.getPriority());
+            outputStream.writeByte(record.getChangeFreq() != null ? record.getChangeFreq().ordinal() : -1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.writeInt(-1);
+            outputStream.close();
+        }
+    }
+
+    private static class RunReader implements Closeable {
+
+        private final DataInputStream inputStream;
+
+        /**
+         * Index of run, pages from run with higher index replace pages with the same name from runs with lower index
+         */
+        private final int index;
+
+        private PageRecord current;
+
+        private RunReader(Path run, int index) throws IOException {
+            this.inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            this.index = index;
+        }
+
+        /**
+         * Read next record
+         *
+         * @return false at end of run
+         */
+        private boolean advance() throws IOException {
+            int nameLength = inputStream.readInt();
+            if (nameLength == -1) {
+                current = null;
+                close();
+                return false;
+            }
+            byte[] name = new byte[nameLength];
+            inputStream.readFully(name);
+            long lastMod = inputStream.readLong();
+            double priority = inputStream.readDouble();
+            byte changeFreq = inputStream.readByte();
+            current = new CompactPageRecord(new String(name, StandardCharsets.UTF_8), lastMod,
+                    changeFreq >= 0 ? CHANGE_FREQS[changeFreq] : null, priority);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * K-way merge of sorted runs (at most {@link #MAX_FAN_IN}).
+     * When more runs contain record with the same name, only record from the latest run is returned.
+     */
+    private static class MergeIterator implements Iterator<PageRecord>, Closeable {
+
+        private final PriorityQueue<RunReader> readers;
+
+        private MergeIterator(List<Path> runs, Comparator<PageRecord> comparator) throws IOException {
+            readers = new PriorityQueue<>(Math.max(1, runs.size()), Comparator.<RunReader, PageRecord>comparing(reader -> reader.current, comparator)
+                    .thenComparing(reader -> reader.index, Comparator.reverseOrder()));
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    RunReader reader = new RunReader(runs.get(i), i);
+                    if (reader.advance()) {
+                        readers.add(reader);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !readers.isEmpty();
+        }
+
+        @Override
+        public PageRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RunReader reader = readers.poll();
+            PageRecord record = reader.current;
+            try {
+                advance(reader);
+                // skip replaced records
+                while (!readers.isEmpty() && readers.peek().current.getName().equals(record.getName())) {
+                    advance(readers.poll());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return record;
+        }
+
+        private void advance(RunReader reader) throws IOException {
+            if (reader.advance()) {
+                readers.add(reader);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            readers.clear();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbsoluteUrlResolverTest {
+
+    private static final String[] BASE_URLS = {
+            "https://www.javavids.com/", "https://www.javavids.com", "http://www.javalibs.com/blog", "HTTP://www.javalibs.com/blog/"
+    };
+
+    private static final String[] NAMES = {
+            null, "", "/", "page", "/page", "page/", "a/b/c.html", "page?arg1=test&amp;arg2=&apos;x&apos;", "a/b:c",
+            "https://cdn.com/image.png", "mailto:test@test.com", "./page", "../page", "a/./b", "a/../b", "a/.", ".well-known/x",
+            "//cdn.com/page", "page#fragment", "page%20name", "page?q=/./", "čeština", "a@b", "?query", "/?query"
+    };
+
+    private static final String[] INVALID_NAMES = {
+            "page name", "page%", "1a:b", "page#a#b", "page{x}", "unknown:page", "a:b"
+    };
+
+    @Test
+    void resolveIsSameAsUriAndUrl() throws Exception {
+        for (String baseUrl : BASE_URLS) {
+            AbsoluteUrlResolver resolver = new AbsoluteUrlResolver(baseUrl);
+            for (String name : NAMES) {
+                assertEquals(AbsoluteUrlResolver.resolveByUriAndUrl(baseUrl, name), resolver.resolve(name), baseUrl + " " + name);
+            }
+        }
+    }
+
+    @Test
+    void appendIsSameAsResolveOfEscapedName() throws Exception {
+        for (String baseUrl : BASE_URLS) {
+            AbsoluteUrlResolver resolver = new AbsoluteUrlResolver(baseUrl);
+            for (String name : NAMES) {
+                String expected = resolver.resolve(UrlUtil.escapeXmlSpecialCharacters(name));
+                StringBuilder builder = new StringBuilder();
+                if (resolver.appendTo(builder, name)) {
+                    assertEquals(expected, builder.toString(), baseUrl + " " + name);
+                } else {
+                    assertEquals(0, builder.length());
+                }
+                StringWriter writer = new StringWriter();
+                if (resolver.writeTo(writer, name)) {
+                    assertEquals(expected, writer.toString(), baseUrl + " " + name);
+                }
+                assertEquals(UrlUtil.connectUrlParts(baseUrl, name), resolver.connect(name));
+            }
+        }
+    }
+
+    @Test
+    void resolveInvalidName() {
+        AbsoluteUrlResolver resolver = new AbsoluteUrlResolver("https://www.javavids.com");
+        for (String name : INVALID_NAMES) {
+            Exception exception = assertThrows(Exception.class, () -> resolver.resolve(name));
+            assertTrue(exception instanceof URISyntaxException || exception instanceof MalformedURLException, name);
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package cz.jiripinkas.jsitemapgenerator;
 
 import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
 import cz.jiripinkas.jsitemapgenerator.generator.SitemapIndexGenerator;
+import cz.jiripinkas.jsitemapgenerator.store.CompactPageStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.junit.jupiter.api.BeforeEach;
@@ -40,6 +41,22 @@ class AbstractSitemapGeneratorTest {
         assertEquals(expectedSitemapIndex, actualSitemapIndex);
     }
 
+    @Test
+    void cacheFragments() {
+        sitemapIndexGenerator.cacheFragments();
+        // package-private method isn't inherited by generators in other packages
+        AbstractSitemapGenerator<?> generator = sitemapIndexGenerator;
+        String expected = sitemapIndexGenerator.toString();
+        assertEquals(expected, sitemapIndexGenerator.toString());
+        assertEquals(2, generator.getFragmentCacheSize());
+
+        // record store creates new WebPage objects on every rendering, they aren't cached
+        sitemapIndexGenerator.pageStore(new CompactPageStore());
+        assertEquals(expected, sitemapIndexGenerator.toString());
+        assertEquals(expected, sitemapIndexGenerator.toString());
+        assertEquals(2, generator.getFragmentCacheSize());
+    }
+
     @Test
     void getAbsoluteUrlRelativeCheck() {
         String absoluteUrl = sitemapIndexGenerator.getAbsoluteUrl("relativeUrl");
@@ -0,0 +1,38 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LastModCacheTest {
+
+    private final W3CDateFormatter formatter = W3CDateFormatter.of(W3CDateFormat.Pattern.AUTO, ZoneOffset.UTC);
+
+    @Test
+    void get() {
+        LastModCache cache = new LastModCache(formatter, 10);
+        assertEquals(16, cache.getCapacity());
+        assertEquals("<lastmod>2019-08-05T10:13:20Z</lastmod>\n", cache.get(1_565_000_000_000L));
+        assertEquals("<lastmod>2019-08-05T10:13:20Z</lastmod>\n", new String(cache.getUtf8(1_565_000_000_000L), StandardCharsets.UTF_8));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(0.5, cache.getHitRate());
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitRate());
+    }
+
+    @Test
+    void capacityIsBounded() {
+        LastModCache cache = new LastModCache(formatter, 4);
+        for (long i = 0; i < 1000; i++) {
+            assertEquals("<lastmod>" + formatter.format(i * 1000) + "</lastmod>\n", cache.get(i * 1000));
+        }
+        assertEquals(1000, cache.getMisses());
+        assertEquals(996, cache.getEvictions());
+        assertThrows(IllegalArgumentException.class, () -> new LastModCache(formatter, 0));
+    }
+
+}
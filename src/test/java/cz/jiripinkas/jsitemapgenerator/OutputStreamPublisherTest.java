@@ -0,0 +1,144 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputStreamPublisherTest {
+
+    @Test
+    void publishInChunks() throws Exception {
+        SitemapGenerator sitemapGenerator = SitemapGenerator.of("https://example.com");
+        for (int i = 0; i < 5000; i++) {
+            sitemapGenerator.addPage("page" + i);
+        }
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+        sitemapGenerator.toPublisher().subscribe(subscriber);
+        assertEquals(sitemapGenerator.toString(), new String(subscriber.done.get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertTrue(subscriber.chunks.get() > 1);
+    }
+
+    @Test
+    void waitForDemand() throws Exception {
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            OutputStreamPublisher publisher = new OutputStreamPublisher(outputStream -> {
+                for (int i = 0; i < 100; i++) {
+                    written.incrementAndGet();
+                    outputStream.write(i);
+                }
+            }, executorService, 10);
+            CollectingSubscriber subscriber = new CollectingSubscriber(0);
+            publisher.subscribe(subscriber);
+            Thread.sleep(50);
+            assertEquals(0, written.get());
+            subscriber.subscription.request(2);
+            // two chunks are published, third chunk waits for demand
+            long end = System.currentTimeMillis() + 10_000;
+            while (written.get() < 30 && System.currentTimeMillis() < end) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            assertEquals(30, written.get());
+            assertEquals(2, subscriber.chunks.get());
+            subscriber.subscription.cancel();
+            // producer stops without completing subscriber
+            executorService.submit(() -> { }).get(10, TimeUnit.SECONDS);
+            assertEquals(30, written.get());
+            assertFalse(subscriber.done.isDone());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidRequest() throws Exception {
+        OutputStreamPublisher publisher = new OutputStreamPublisher(outputStream -> outputStream.write(new byte[100]), Runnable::run, 10);
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        Exception exception = assertThrows(Exception.class, () -> subscriber.done.get(10, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void cancel() throws Exception {
+        AtomicInteger written = new AtomicInteger();
+        OutputStreamPublisher publisher = new OutputStreamPublisher(outputStream -> {
+            for (int i = 0; i < 100; i++) {
+                written.incrementAndGet();
+                outputStream.write(i);
+            }
+        }, Runnable::run, 10);
+        CollectingSubscriber subscriber = new CollectingSubscriber(1) {
+            @Override
+            public void onNext(ByteBuffer item) {
+                super.onNext(item);
+                subscription.cancel();
+            }
+        };
+        publisher.subscribe(subscriber);
+        // rendering stops after cancel, when next chunk is full
+        assertEquals(20, written.get());
+        assertEquals(1, subscriber.chunks.get());
+        assertFalse(subscriber.done.isDone());
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        private final long initialRequest;
+
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        private final CompletableFuture<byte[]> done = new CompletableFuture<>();
+
+        private final AtomicInteger chunks = new AtomicInteger();
+
+        Flow.Subscription subscription;
+
+        private CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            chunks.incrementAndGet();
+            outputStream.write(item.array(), item.arrayOffset() + item.position(), item.remaining());
+            if (initialRequest > 0) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(outputStream.toByteArray());
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void compress() throws IOException {
+        byte[] data = new byte[100_000];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            // compressible data
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzipOutputStream = new ParallelGzipOutputStream(outputStream, ForkJoinPool.commonPool(), 1000, Deflater.DEFAULT_COMPRESSION)) {
+            gzipOutputStream.write(data, 0, 10);
+            gzipOutputStream.write(data[10]);
+            gzipOutputStream.write(data, 11, data.length - 11);
+        }
+        assertArrayEquals(data, gunzip(outputStream.toByteArray()));
+    }
+
+    @Test
+    void compressWithCustomExecutor() throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            byte[] data = new byte[10_000];
+            new Random(2).nextBytes(data);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            ParallelGzipOutputStream gzipOutputStream = new ParallelGzipOutputStream(outputStream, executorService, 64, Deflater.BEST_SPEED);
+            gzipOutputStream.write(data);
+            gzipOutputStream.finish();
+            assertArrayEquals(data, gunzip(outputStream.toByteArray()));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void compressEmpty() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(outputStream, ForkJoinPool.commonPool(), 1000, Deflater.DEFAULT_COMPRESSION).close();
+        assertArrayEquals(new byte[0], gunzip(outputStream.toByteArray()));
+    }
+
+    @Test
+    void writeAfterClose() throws IOException {
+        ParallelGzipOutputStream gzipOutputStream = new ParallelGzipOutputStream(new ByteArrayOutputStream(), ForkJoinPool.commonPool(), 1000, Deflater.DEFAULT_COMPRESSION);
+        gzipOutputStream.close();
+        assertThrows(IOException.class, () -> gzipOutputStream.write(1));
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrettyXmlWriterTest {
+
+    private final SitemapGenerator sitemapGenerator = SitemapGenerator.of("https://example.com");
+
+    @Test
+    void sameAsDomPrettyPrint() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<root xmlns:b=\"http://b\" xmlns=\"http://a\" z=\"1\" a='x&quot;&apos;&gt;&amp;'>\n" +
+                "<item>\n" +
+                "<text>x&amp;&apos;&quot;&lt;&gt;ž</text>\n" +
+                "<empty></empty><whitespace> \n </whitespace><selfClosing a=\"1\"/>\n" +
+                "<mixed> te <b:child>x</b:child> t <child>y</child></mixed><spaces> a </spaces>\n" +
+                "<deep><deeper><deepest>1</deepest></deeper></deep>\n" +
+                "</item>\n" +
+                "</root>\n";
+        for (int indent = 0; indent <= 4; indent += 2) {
+            assertEquals(sitemapGenerator.toPrettyXmlString(xml, indent).replace("\r\n", "\n"), prettyPrint(xml, indent));
+        }
+    }
+
+    @Test
+    void writeCharByChar() throws IOException {
+        String xml = "<a><b x=\"1\">text</b><c/></a>";
+        StringWriter stringWriter = new StringWriter();
+        Writer writer = new PrettyXmlWriter(stringWriter, 2);
+        for (char c : xml.toCharArray()) {
+            writer.write(c);
+        }
+        writer.close();
+        assertEquals("<a>\n  <b x=\"1\">text</b>\n  <c/>\n</a>\n", stringWriter.toString());
+    }
+
+    @Test
+    void sitemapSameAsDomPrettyPrint() throws IOException {
+        sitemapGenerator
+                .addPage(WebPage.builder()
+                        .name("page?a=1&b='2'")
+                        .lastMod(LocalDateTime.of(2019, 1, 1, 0, 0))
+                        .priorityMax()
+                        .changeFreqDaily()
+                        .alternateName("de", "page-de")
+                        .build())
+                .addPage(WebPage.builder()
+                        .name("images")
+                        .images(Collections.singletonList(WebPage.imageBuilder()
+                                .loc("image.png")
+                                .caption("Caption <&>")
+                                .title("Title")
+                                .build()))
+                        .build());
+        String expected = sitemapGenerator.toPrettyXmlString(sitemapGenerator.toString(), 2).replace("\r\n", "\n");
+        assertEquals(expected, sitemapGenerator.toPrettyString(2));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        sitemapGenerator.writePrettyTo(outputStream, 2);
+        assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void negativeIndent() {
+        assertThrows(IllegalArgumentException.class, () -> new PrettyXmlWriter(new StringWriter(), -1));
+    }
+
+    private static String prettyPrint(String xml, int indent) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (Writer writer = new PrettyXmlWriter(stringWriter, indent)) {
+            writer.write(xml);
+        }
+        return stringWriter.toString();
+    }
+
+}
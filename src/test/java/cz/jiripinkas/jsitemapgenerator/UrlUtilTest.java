@@ -2,6 +2,10 @@ package cz.jiripinkas.jsitemapgenerator;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UrlUtilTest {
@@ -15,10 +19,34 @@ class UrlUtilTest {
         );
     }
 
+    @Test
+    void connectUrlPartsInto() {
+        assertAll(
+                () -> assertEquals("<https://javalibs.com", UrlUtil.connectUrlParts(new StringBuilder("<"), "https://javalibs.com", null).toString()),
+                () -> assertEquals("<https://javalibs.com/page", UrlUtil.connectUrlParts(new StringBuilder("<"), "https://javalibs.com/", "page").toString()),
+                () -> assertEquals("<https://javalibs.com/page", UrlUtil.connectUrlParts(new StringBuilder("<"), "https://javalibs.com", "//page").toString())
+        );
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        UrlUtil.connectUrlParts(buffer, "https://javalibs.com", "/čeština");
+        buffer.flip();
+        assertEquals("https://javalibs.com/čeština", StandardCharsets.UTF_8.decode(buffer).toString());
+    }
+
     @Test
     void escapeXmlSpecialCharacters() {
         assertEquals("/page?arg1=&apos;test&apos;&amp;arg2=&lt;test&gt;&amp;arg3=&quot;test&quot;", UrlUtil.escapeXmlSpecialCharacters("/page?arg1='test'&arg2=<test>&arg3=\"test\""));
         assertNull(UrlUtil.escapeXmlSpecialCharacters(null));
+        String url = "/page?arg1=test";
+        assertSame(url, UrlUtil.escapeXmlSpecialCharacters(url));
+    }
+
+    @Test
+    void escapeXmlSpecialCharactersInto() throws Exception {
+        assertEquals("x&lt;a&gt;&amp;&amp;b", UrlUtil.escapeXmlSpecialCharacters(new StringBuilder("x"), "<a>&&b").toString());
+        StringWriter writer = new StringWriter();
+        UrlUtil.escapeXmlSpecialCharacters(writer, "&quot;'");
+        UrlUtil.escapeXmlSpecialCharacters(writer, "plain");
+        assertEquals("&amp;quot;&apos;plain", writer.toString());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8WriterTest {
+
+    @Test
+    void write() throws IOException {
+        String text = "ascii čeština € 😀 lone \uD800 low \uDC00 end \uD83D";
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        // small buffer forces flushing in the middle of multi-byte characters
+        try (Utf8Writer writer = new Utf8Writer(outputStream, 4)) {
+            writer.write(text);
+        }
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), outputStream.toByteArray());
+    }
+
+    @Test
+    void writeSurrogatePairSplitBetweenCalls() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Utf8Writer writer = new Utf8Writer(outputStream)) {
+            writer.write('\uD83D');
+            writer.write("\uDE00");
+        }
+        assertEquals("😀", outputStream.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    void writeUtf8() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (Utf8Writer writer = new Utf8Writer(outputStream, 8)) {
+            writer.write("a");
+            Utf8Writer.writeUtf8(writer, "čeština".getBytes(StandardCharsets.UTF_8));
+            Utf8Writer.writeUtf8(writer, "long text which doesn't fit into buffer".getBytes(StandardCharsets.UTF_8));
+            writer.write("b");
+        }
+        assertEquals("ačeštinalong text which doesn't fit into bufferb", outputStream.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    void writeUtf8IntoOtherWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        Utf8Writer.writeUtf8(writer, "čeština".getBytes(StandardCharsets.UTF_8));
+        assertEquals("čeština", writer.toString());
+    }
+
+}
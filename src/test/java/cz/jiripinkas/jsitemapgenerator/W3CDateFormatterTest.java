@@ -0,0 +1,86 @@
+package cz.jiripinkas.jsitemapgenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class W3CDateFormatterTest {
+
+    private static final long DATE = 1_565_000_000_000L; // 2019-08-05T10:13:20Z
+
+    @Test
+    void formatAuto() {
+        W3CDateFormatter formatter = W3CDateFormatter.of(W3CDateFormat.Pattern.AUTO, ZoneOffset.UTC);
+        assertAll(
+                () -> assertEquals("2019-08-05T10:13:20.123Z", formatter.format(DATE + 123)),
+                () -> assertEquals("2019-08-05T10:13:20Z", formatter.format(DATE)),
+                () -> assertEquals("2019-08-05T10:13Z", formatter.format(DATE - 20_000)),
+                () -> assertEquals("2019-08-05", formatter.format(DATE - 36_800_000))
+        );
+    }
+
+    @Test
+    void formatPatterns() {
+        ZoneId prague = ZoneId.of("Europe/Prague");
+        assertAll(
+                () -> assertEquals("2019-08-05T12:13:20.000+02:00", W3CDateFormatter.of(W3CDateFormat.Pattern.MILLISECOND, prague).format(DATE)),
+                () -> assertEquals("2019-08-05T12:13+02:00", W3CDateFormatter.of(W3CDateFormat.Pattern.MINUTE, prague).format(DATE)),
+                () -> assertEquals("2019-08", W3CDateFormatter.of(W3CDateFormat.Pattern.MONTH, prague).format(DATE)),
+                () -> assertEquals("2019", W3CDateFormatter.of(W3CDateFormat.Pattern.YEAR, prague).format(DATE)),
+                () -> assertEquals("2019-08-05T05:43:20-04:30", W3CDateFormatter.of(W3CDateFormat.Pattern.SECOND, ZoneOffset.ofHoursMinutes(-4, -30)).format(DATE))
+        );
+    }
+
+    @Test
+    void formatIsSameAsW3CDateFormat() {
+        for (String timeZone : new String[]{"GMT", "UTC", "Europe/Prague", "America/St_Johns", "Asia/Kolkata"}) {
+            for (W3CDateFormat.Pattern pattern : W3CDateFormat.Pattern.values()) {
+                W3CDateFormat dateFormat = new W3CDateFormat(pattern);
+                dateFormat.setTimeZone(TimeZone.getTimeZone(timeZone));
+                W3CDateFormatter formatter = dateFormat.toFormatter();
+                for (long date = -15_000_000_000_000L; date < 5_000_000_000_000L; date += 7_777_777_777L) {
+                    assertEquals(dateFormat.formatLegacy(new Date(date)), formatter.format(date), timeZone + " " + pattern + " " + date);
+                }
+            }
+        }
+    }
+
+    @Test
+    void formatToBuffer() {
+        W3CDateFormatter formatter = W3CDateFormatter.of(W3CDateFormat.Pattern.AUTO, ZoneOffset.UTC);
+        byte[] buffer = new byte[W3CDateFormatter.MAX_LENGTH + 1];
+        buffer[0] = '>';
+        int end = formatter.formatTo(DATE, buffer, 1);
+        assertEquals(">2019-08-05T10:13:20Z", new String(buffer, 0, end, StandardCharsets.UTF_8));
+        assertEquals("<2019-08-05T10:13:20Z", formatter.formatTo(new StringBuilder("<"), DATE).toString());
+    }
+
+    @Test
+    void formatFromMultipleThreads() {
+        W3CDateFormatter formatter = W3CDateFormatter.of(W3CDateFormat.Pattern.AUTO, ZoneId.of("Europe/Prague"));
+        W3CDateFormat dateFormat = new W3CDateFormat();
+        dateFormat.setTimeZone(TimeZone.getTimeZone("Europe/Prague"));
+        List<String> expected = LongStream.range(0, 10_000).mapToObj(i -> dateFormat.format(new Date(DATE + i % 7 * 1_000_003))).collect(Collectors.toList());
+        List<String> actual = LongStream.range(0, 10_000).parallel().mapToObj(i -> formatter.format(DATE + i % 7 * 1_000_003)).collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void w3cDateFormatFollowsTimeZone() {
+        W3CDateFormat dateFormat = new W3CDateFormat(W3CDateFormat.Pattern.MINUTE);
+        dateFormat.setTimeZone(W3CDateFormat.ZULU);
+        assertEquals("2019-08-05T10:13Z", dateFormat.format(new Date(DATE)));
+        dateFormat.setTimeZone(TimeZone.getTimeZone("Europe/Prague"));
+        assertEquals("2019-08-05T12:13+02:00", dateFormat.format(new Date(DATE)));
+    }
+
+}
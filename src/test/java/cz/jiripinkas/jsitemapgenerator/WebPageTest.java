@@ -55,6 +55,17 @@ class WebPageTest {
 		assertEquals("dir1/dir2/dir3/name", build.constructName());
 	}
 
+	@Test
+	void testConstructNameAfterChange() {
+		WebPage build = WebPage.builder().dir("dir").name("name").extension("html").build();
+		assertEquals("dir/name.html", build.constructName());
+		build.setName("other");
+		build.setDir(null);
+		assertEquals("other.html", build.constructName());
+		build.setExtension(null);
+		assertEquals("other", build.constructName());
+	}
+
 	@Test
 	void testNameRoot() {
 		WebPage build = WebPage.builder().nameRoot().build();
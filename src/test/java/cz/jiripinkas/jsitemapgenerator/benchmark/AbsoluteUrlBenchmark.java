@@ -0,0 +1,106 @@
+package cz.jiripinkas.jsitemapgenerator.benchmark;
+
+import cz.jiripinkas.jsitemapgenerator.UrlUtil;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares throughput of absolute URL resolution of sitemap names (page, hreflang alternates and images):
+ * original implementation (new URI and new URL for every name) and current AbstractSitemapGenerator.getAbsoluteUrl().
+ * This isn't a unit test, run it manually: java ... AbsoluteUrlBenchmark [numberOfNames]
+ */
+public class AbsoluteUrlBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private static final String BASE_URL = "https://example.com";
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0:
+                    names[i] = "products/product-" + i + ".html";
+                    break;
+                case 1:
+                    names[i] = "de/products/product-" + i + ".html";
+                    break;
+                case 2:
+                    names[i] = "images/product-" + i + ".png";
+                    break;
+                default:
+                    names[i] = "search?q=product-" + i + "&page=2";
+                    break;
+            }
+        }
+        ResolvingSitemapGenerator generator = new ResolvingSitemapGenerator();
+        report("original getAbsoluteUrl (URI + URL)", names, AbsoluteUrlBenchmark::originalGetAbsoluteUrl);
+        report("getAbsoluteUrl", names, generator::resolve);
+    }
+
+    /**
+     * getAbsoluteUrl implementation from previous versions of AbstractSitemapGenerator
+     */
+    private static String originalGetAbsoluteUrl(String webPageName) {
+        webPageName = UrlUtil.escapeXmlSpecialCharacters(webPageName);
+        try {
+            String resultString;
+            if (webPageName != null) {
+                URI uri = new URI(webPageName);
+                String stringUrl;
+                if (uri.isAbsolute()) {
+                    stringUrl = webPageName;
+                } else {
+                    stringUrl = UrlUtil.connectUrlParts(BASE_URL, webPageName);
+                }
+                resultString = stringUrl;
+            } else {
+                resultString = BASE_URL;
+            }
+            return new URL(resultString).toString();
+        } catch (MalformedURLException | URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void report(String name, String[] names, UnaryOperator<String> resolver) {
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            checksum += run(names, resolver);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            checksum += run(names, resolver);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / ROUNDS;
+        System.out.printf("%-45s %8.1f M names/s (checksum %d)%n", name, names.length / 1e6 / seconds, checksum);
+    }
+
+    private static long run(String[] names, UnaryOperator<String> resolver) {
+        long length = 0;
+        for (String name : names) {
+            length += resolver.apply(name).length();
+        }
+        return length;
+    }
+
+    private static class ResolvingSitemapGenerator extends SitemapGenerator {
+
+        private ResolvingSitemapGenerator() {
+            super(BASE_URL);
+        }
+
+        private String resolve(String webPageName) {
+            return getAbsoluteUrl(webPageName);
+        }
+    }
+
+}
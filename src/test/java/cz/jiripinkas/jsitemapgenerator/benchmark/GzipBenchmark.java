@@ -0,0 +1,99 @@
+package cz.jiripinkas.jsitemapgenerator.benchmark;
+
+import cz.jiripinkas.jsitemapgenerator.ParallelGzipOutputStream;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares throughput of gzip compression of a large sitemap:
+ * original implementation (String copied through 1 KB buffer into GZIPOutputStream),
+ * streaming GZIPOutputStream and ParallelGzipOutputStream.
+ * This isn't a unit test, run it manually: java ... GzipBenchmark [numberOfUrls]
+ */
+public class GzipBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int urls = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        SitemapGenerator sitemapGenerator = SitemapGenerator.of("https://example.com");
+        for (int i = 0; i < urls; i++) {
+            sitemapGenerator.addPage(WebPage.builder()
+                    .name("products/product-" + i + ".html")
+                    .lastMod(LocalDateTime.of(2019, 1, 1 + i % 28, 0, 0))
+                    .changeFreqWeekly()
+                    .priority((i % 10) / 10.0)
+                    .build());
+        }
+        byte[] sitemap = sitemapGenerator.toString().getBytes(StandardCharsets.UTF_8);
+        int cores = ForkJoinPool.commonPool().getParallelism();
+        System.out.printf("Sitemap: %d URLs, %.1f MB, parallelism: %d%n", urls, sitemap.length / 1e6, cores);
+
+        report("original gzipIt (1 KB buffer)", sitemap, 1, () -> originalGzipIt(sitemap));
+        report("GZIPOutputStream (64 KB buffer)", sitemap, 1, () -> {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (OutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024)) {
+                gzipOutputStream.write(sitemap);
+            }
+            return outputStream.size();
+        });
+        for (int blockSize : new int[]{256 * 1024, 1024 * 1024}) {
+            report("ParallelGzipOutputStream (" + blockSize / 1024 + " KB blocks)", sitemap, cores, () -> {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (OutputStream gzipOutputStream = new ParallelGzipOutputStream(outputStream, ForkJoinPool.commonPool(), blockSize, Deflater.DEFAULT_COMPRESSION)) {
+                    gzipOutputStream.write(sitemap);
+                }
+                return outputStream.size();
+            });
+        }
+    }
+
+    /**
+     * Gzip implementation from previous versions of AbstractSitemapGenerator
+     */
+    private static int originalGzipIt(byte[] sitemap) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        try (GZIPOutputStream gzos = new GZIPOutputStream(outputStream);
+             InputStream in = new ByteArrayInputStream(sitemap)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                gzos.write(buffer, 0, len);
+            }
+        }
+        return outputStream.toByteArray().length;
+    }
+
+    private static void report(String name, byte[] sitemap, int cores, Compression compression) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            compression.run();
+        }
+        long start = System.nanoTime();
+        int compressedSize = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            compressedSize = compression.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / ROUNDS;
+        double throughput = sitemap.length / 1e6 / seconds;
+        System.out.printf("%-45s %8.1f MB/s %8.1f MB/s per core, ratio %.3f%n",
+                name, throughput, throughput / cores, (double) compressedSize / sitemap.length);
+    }
+
+    private interface Compression {
+        int run() throws IOException;
+    }
+
+}
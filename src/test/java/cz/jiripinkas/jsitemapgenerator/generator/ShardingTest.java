@@ -0,0 +1,188 @@
+package cz.jiripinkas.jsitemapgenerator.generator;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.util.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardingTest {
+
+    private Path directory;
+
+    private SitemapGenerator sitemapGenerator;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("sharding");
+        sitemapGenerator = SitemapGenerator.of("https://example.com");
+        for (int i = 0; i < 5; i++) {
+            sitemapGenerator.addPage(WebPage.builder()
+                    .name("page" + i)
+                    .lastMod(LocalDateTime.of(2019, 1, i + 1, 0, 0))
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testShardByMaxUrls() throws Exception {
+        SitemapIndexGenerator sitemapIndexGenerator = sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .maxUrls(2)
+                .build());
+        String expectedSitemapIndex = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+                "<sitemap>\n" +
+                "<loc>https://example.com/sitemap-1.xml</loc>\n" +
+                "<lastmod>2019-01-02</lastmod>\n" +
+                "</sitemap>\n" +
+                "<sitemap>\n" +
+                "<loc>https://example.com/sitemap-2.xml</loc>\n" +
+                "<lastmod>2019-01-04</lastmod>\n" +
+                "</sitemap>\n" +
+                "<sitemap>\n" +
+                "<loc>https://example.com/sitemap-3.xml</loc>\n" +
+                "<lastmod>2019-01-05</lastmod>\n" +
+                "</sitemap>\n" +
+                "</sitemapindex>";
+        assertEquals(expectedSitemapIndex, sitemapIndexGenerator.toString());
+        assertEquals(expectedSitemapIndex, new String(Files.readAllBytes(directory.resolve("sitemap.xml")), StandardCharsets.UTF_8));
+        String expectedLastSitemap = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+                "<url>\n" +
+                "<loc>https://example.com/page4</loc>\n" +
+                "<lastmod>2019-01-05</lastmod>\n" +
+                "</url>\n" +
+                "</urlset>";
+        assertEquals(expectedLastSitemap, new String(Files.readAllBytes(directory.resolve("sitemap-3.xml")), StandardCharsets.UTF_8));
+        for (int i = 1; i <= 3; i++) {
+            TestUtil.testSitemapXsdFile(directory.resolve("sitemap-" + i + ".xml").toFile(), new File("src/test/resources/sitemap.xsd"));
+        }
+        TestUtil.testSitemapXsdFile(directory.resolve("sitemap.xml").toFile(), new File("src/test/resources/siteindex.xsd"));
+    }
+
+    @Test
+    void testShardByMaxBytes() throws Exception {
+        String sitemap = sitemapGenerator.toString();
+        long maxBytes = sitemap.length() - 1;
+        SitemapIndexGenerator sitemapIndexGenerator = sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .maxBytes(maxBytes)
+                .indexFileName(null)
+                .build());
+        assertEquals(2, sitemapIndexGenerator.toStringArray().length - 3);
+        assertFalse(Files.exists(directory.resolve("sitemap.xml")));
+        assertTrue(Files.size(directory.resolve("sitemap-1.xml")) <= maxBytes);
+        assertTrue(Files.size(directory.resolve("sitemap-2.xml")) <= maxBytes);
+    }
+
+    @Test
+    void testShardTooSmall() {
+        assertThrows(IllegalStateException.class, () -> sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .maxBytes(100)
+                .build()));
+    }
+
+    @Test
+    void testShardGzipWithDir() throws Exception {
+        SitemapIndexGenerator sitemapIndexGenerator = sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .dir("sitemaps")
+                .gzip()
+                .build());
+        assertTrue(sitemapIndexGenerator.toString().contains("<loc>https://example.com/sitemaps/sitemap-1.xml.gz</loc>"));
+        try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(directory.resolve("sitemap-1.xml.gz")))) {
+            TestUtil.testSitemapXsd(inputStream, new File("src/test/resources/sitemap.xsd"));
+        }
+    }
+
+    @Test
+    void testAtomicSharding() throws Exception {
+        Path sitemapDirectory = directory.resolve("sitemaps");
+        sitemapGenerator.atomicFileOutput(true).toShardedFiles(Sharding.builder()
+                .directory(sitemapDirectory)
+                .maxUrls(2)
+                .build());
+        assertEquals(4, countFiles(sitemapDirectory));
+        // whole set of files is replaced, files from previous generation are removed
+        sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(sitemapDirectory)
+                .build());
+        assertEquals(2, countFiles(sitemapDirectory));
+        assertEquals(sitemapGenerator.toString(), new String(Files.readAllBytes(sitemapDirectory.resolve("sitemap-1.xml")), StandardCharsets.UTF_8));
+        assertTrue(Files.exists(sitemapDirectory.resolve("sitemap.xml")));
+        // no temporary directories are left
+        assertEquals(1, countFiles(directory));
+    }
+
+    @Test
+    void testShardingRemovesStaleFiles() throws Exception {
+        sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .maxUrls(1)
+                .build());
+        assertEquals(6, countFiles(directory));
+        Files.write(directory.resolve("sitemap-01.xml"), new byte[0]);
+        Files.write(directory.resolve("sitemap-1.html"), new byte[0]);
+        // files of earlier generation with more files or without gzip are deleted, other files are kept
+        sitemapGenerator.toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .maxUrls(2)
+                .gzip()
+                .build());
+        assertTrue(Files.exists(directory.resolve("sitemap-3.xml.gz")));
+        assertFalse(Files.exists(directory.resolve("sitemap-4.xml.gz")));
+        assertFalse(Files.exists(directory.resolve("sitemap-1.xml")));
+        assertFalse(Files.exists(directory.resolve("sitemap-5.xml")));
+        assertTrue(Files.exists(directory.resolve("sitemap-01.xml")));
+        assertTrue(Files.exists(directory.resolve("sitemap-1.html")));
+        assertEquals(6, countFiles(directory));
+    }
+
+    @Test
+    void testAtomicShardingDirectoryWithOtherFiles() throws Exception {
+        Files.write(directory.resolve("index.html"), new byte[0]);
+        assertThrows(IOException.class, () -> sitemapGenerator.atomicFileOutput().toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .build()));
+        assertEquals(1, countFiles(directory));
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.count();
+        }
+    }
+
+    @Test
+    void testShardEmptySitemap() throws Exception {
+        SitemapGenerator.of("https://example.com").toShardedFiles(Sharding.builder()
+                .directory(directory)
+                .build());
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+                "</urlset>", new String(Files.readAllBytes(directory.resolve("sitemap-1.xml")), StandardCharsets.UTF_8));
+    }
+
+}
@@ -8,12 +8,33 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +50,163 @@ class SitemapGeneratorTest {
 		sitemapGenerator.addPage(WebPage.builder().name("contact.php").build());
 	}
 
+	@Test
+	void testAddPagesLazily() {
+		String expected = SitemapGenerator.of("http://www.javavids.com")
+				.addPages(Arrays.asList(WebPage.of("a"), WebPage.of("b"), WebPage.of("c"), WebPage.of("d")))
+				.toString();
+		AtomicInteger consumed = new AtomicInteger();
+		Iterator<String> names = Stream.of("c", "d").peek(name -> consumed.incrementAndGet()).iterator();
+		String actual = SitemapGenerator.of("http://www.javavids.com")
+				.addPages(Stream.of("a"), WebPage::of)
+				.addPageNames(Stream.of("b"), name -> name)
+				.addPages(names, WebPage::of)
+				.toString();
+		assertEquals(expected, actual);
+		assertEquals(2, consumed.get());
+		assertEquals(expected, SitemapGenerator.of("http://www.javavids.com")
+				.addPages(Stream.of(WebPage.of("a"), WebPage.of("b")))
+				.addPages(Arrays.asList(WebPage.of("c")).iterator())
+				.addPages(Arrays.asList(WebPage.of("d")).spliterator())
+				.toString());
+	}
+
+	@Test
+	void testCollector() {
+		// second half of pages replaces first half, later page in stream wins
+		String expected = SitemapGenerator.of("http://www.javavids.com")
+				.addPages(IntStream.range(0, 20_000).mapToObj(SitemapGeneratorTest::createCollectedPage))
+				.toString();
+		String actual = IntStream.range(0, 20_000).parallel()
+				.mapToObj(SitemapGeneratorTest::createCollectedPage)
+				.collect(SitemapGenerator.collector("http://www.javavids.com"))
+				.toString();
+		assertEquals(expected, actual);
+		assertTrue(actual.contains("<loc>http://www.javavids.com/page1</loc>\n<priority>1.0</priority>"));
+	}
+
+	private static WebPage createCollectedPage(int i) {
+		return WebPage.builder()
+				.name("page" + i % 10_000)
+				.priority(i < 10_000 ? 0.5 : 1.0)
+				.build();
+	}
+
+	@Test
+	void testDeferredNames() {
+		SitemapGenerator eagerGenerator = SitemapGenerator.of("http://www.javavids.com").defaultPriority(0.5);
+		for (int i = 0; i < 25; i++) {
+			eagerGenerator.addPage(WebPage.builder().name("page" + i).alternateName("cs", "cs/page" + i).build());
+		}
+		eagerGenerator.addPage(WebPage.builder().name("supplied").build());
+		AtomicInteger supplierCalls = new AtomicInteger();
+		AtomicInteger resolverCalls = new AtomicInteger();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		BatchNameResolver<Integer> resolver = keys -> {
+			resolverCalls.incrementAndGet();
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				running.decrementAndGet();
+			}
+			return keys.stream().collect(Collectors.toMap(key -> key, key -> "page" + key));
+		};
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			SitemapGenerator deferredGenerator = SitemapGenerator.of("http://www.javavids.com")
+					.defaultPriority(0.5)
+					.deferredNameResolution(executor, 2)
+					.deferredNameBatchSize(10);
+			for (int i = 0; i < 25; i++) {
+				deferredGenerator.addPage(WebPage.builder()
+						.deferredName(i, resolver)
+						.deferredAlternateName("cs", "cs/page" + i, keys -> Map.of())
+						.build());
+			}
+			// alternate names are resolved by other resolver, which returns no names
+			assertThrows(IllegalStateException.class, deferredGenerator::toString);
+			// pages stay queued, so names are resolved again
+			IllegalStateException exception = assertThrows(IllegalStateException.class, deferredGenerator::toString);
+			assertTrue(exception.getMessage().startsWith("Deferred name was resolved to null"));
+
+			deferredGenerator = SitemapGenerator.of("http://www.javavids.com")
+					.defaultPriority(0.5)
+					.deferredNameResolution(executor, 2)
+					.deferredNameBatchSize(10);
+			resolverCalls.set(0);
+			BatchNameResolver<String> alternateNameResolver = keys -> keys.stream().collect(Collectors.toMap(key -> key, key -> key));
+			for (int i = 0; i < 25; i++) {
+				deferredGenerator.addPage(WebPage.builder()
+						.deferredName(i, resolver)
+						.deferredAlternateName("cs", "cs/page" + i, alternateNameResolver)
+						.build());
+			}
+			deferredGenerator.addPage(WebPage.builder().deferredName(() -> {
+				supplierCalls.incrementAndGet();
+				return "supplied";
+			}).build());
+			assertEquals(0, supplierCalls.get());
+			assertEquals(0, resolverCalls.get());
+			assertEquals(eagerGenerator.toString(), deferredGenerator.toString());
+			assertEquals(1, supplierCalls.get());
+			// 25 keys in batches of 10
+			assertEquals(3, resolverCalls.get());
+			assertTrue(maxRunning.get() <= 2);
+			// names are resolved only once
+			deferredGenerator.toString();
+			assertEquals(1, supplierCalls.get());
+			assertEquals(3, resolverCalls.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testCollectorWithDeferredNames() {
+		SitemapGenerator expected = SitemapGenerator.of("http://www.javavids.com");
+		IntStream.range(0, 2000).mapToObj(i -> createCollectedPage(i, false)).forEach(expected::addPage);
+		SitemapGenerator actual = IntStream.range(0, 2000).parallel()
+				.mapToObj(i -> createCollectedPage(i, true))
+				.collect(SitemapGenerator.collector("http://www.javavids.com"));
+		assertEquals(expected.toString(), actual.toString());
+		// pages which are added after pages were collected keep order of adds
+		actual.addPage(WebPage.builder().deferredName(() -> "page1").priority(0.1).build())
+				.addPage(WebPage.builder().name("page1").priority(0.9).build());
+		expected.addPage(WebPage.builder().name("page1").priority(0.9).build());
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private static WebPage createCollectedPage(int i, boolean deferred) {
+		// every page is added four times, the last one has priority 0.75
+		String name = "page" + i % 500;
+		WebPage.WebPageBuilder builder = deferred && i % 2 == 0 ? WebPage.builder().deferredName(() -> name) : WebPage.builder().name(name);
+		return builder.priority(i / 500 / 4.0).build();
+	}
+
+	@Test
+	void testDeferredNamesKeepOrderOfAdds() {
+		SitemapGenerator sitemapGenerator = SitemapGenerator.of("http://www.javavids.com")
+				.addPage(WebPage.builder().deferredName(() -> "a").priority(0.1).build())
+				.addPage(WebPage.builder().name("a").priority(0.9).build())
+				.addPage(WebPage.builder().name("b").priority(0.1).build())
+				.addPage(WebPage.builder().deferredName(() -> "b").priority(0.9).build())
+				.addPage(WebPage.builder().deferredName(() -> "c").priority(0.1).build())
+				.addPage(WebPage.builder().deferredName(() -> "c").priority(0.9).build());
+		String expected = SitemapGenerator.of("http://www.javavids.com")
+				.addPage(WebPage.builder().name("a").priority(0.9).build())
+				.addPage(WebPage.builder().name("b").priority(0.9).build())
+				.addPage(WebPage.builder().name("c").priority(0.9).build())
+				.toString();
+		assertEquals(expected, sitemapGenerator.toString());
+		// page added after names were resolved replaces resolved page
+		sitemapGenerator.addPage(WebPage.builder().name("a").priority(0.5).build());
+		assertTrue(sitemapGenerator.toString().contains("<loc>http://www.javavids.com/a</loc>\n<priority>0.5</priority>"));
+	}
+
 	@Test
 	void testConstructImage() {
 		Image image = new Image();
@@ -144,6 +322,276 @@ class SitemapGeneratorTest {
 		}
 	}
 
+	@Test
+	void testWriteToOutputStream() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		sitemapGenerator.writeTo(outputStream);
+		assertEquals(sitemapGenerator.toString(), outputStream.toString(StandardCharsets.UTF_8.name()));
+		assertEquals(String.join("", sitemapGenerator.toStringArray()), outputStream.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	@Test
+	void testWriteToWriter() throws Exception {
+		SitemapGenerator sitemapGenerator = SitemapGenerator.of("http://www.javavids.com");
+		WebPage webPage = WebPage.builder().name("čeština").alternateName("de", "deutsch").build();
+		webPage.addImage(WebPage.imageBuilder().loc("/image.png").title("title").build());
+		sitemapGenerator.addPage(webPage);
+		StringWriter writer = new StringWriter();
+		sitemapGenerator.writeTo(writer);
+		assertEquals(String.join("", sitemapGenerator.toStringArray()), writer.toString());
+	}
+
+	@Test
+	void testParallelRendering() throws Exception {
+		SitemapGenerator sitemapGenerator = SitemapGenerator.of("http://www.javavids.com");
+		for (int i = 0; i < 1000; i++) {
+			WebPage webPage = WebPage.builder()
+					.name("page-" + i)
+					.priority((i % 11) / 10.0)
+					.lastMod(LocalDateTime.of(2019, 1, 1 + i % 28, i % 24, i % 60))
+					.alternateName("de", "de/page-" + i)
+					.build();
+			webPage.addImage(WebPage.imageBuilder().loc("image-" + i + ".png").caption("čeština & " + i).build());
+			sitemapGenerator.addPage(webPage);
+		}
+		String expectedSitemap = sitemapGenerator.toString();
+		ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+		sitemapGenerator.writeTo(expectedBytes);
+
+		sitemapGenerator.parallelRendering(7);
+		assertEquals(expectedSitemap, sitemapGenerator.toString());
+		ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+		sitemapGenerator.writeTo(actualBytes);
+		assertArrayEquals(expectedBytes.toByteArray(), actualBytes.toByteArray());
+
+		ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			sitemapGenerator.parallelRendering(executorService, 100);
+			assertEquals(expectedSitemap, sitemapGenerator.toString());
+		} finally {
+			executorService.shutdown();
+		}
+
+		sitemapGenerator.resetParallelRendering();
+		assertEquals(expectedSitemap, sitemapGenerator.toString());
+	}
+
+	@Test
+	void testToGzipByteArray() throws Exception {
+		byte[] gzip = sitemapGenerator.toGzipByteArray();
+		assertEquals(sitemapGenerator.toString(), gunzip(gzip));
+	}
+
+	@Test
+	void testToGzipFile() throws Exception {
+		File tmpFile = File.createTempFile("test", "sitemap.xml.gz");
+		try {
+			sitemapGenerator.gzipLevel(Deflater.BEST_COMPRESSION).toGzipFile(tmpFile.toPath());
+			assertEquals(sitemapGenerator.toString(), gunzip(Files.readAllBytes(tmpFile.toPath())));
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	@Test
+	void testAtomicToFile() throws Exception {
+		Path directory = Files.createTempDirectory("atomic");
+		Path file = directory.resolve("sitemap.xml");
+		try {
+			Files.write(file, "old".getBytes(StandardCharsets.UTF_8));
+			sitemapGenerator.atomicFileOutput(true).toFile(file);
+			assertEquals(sitemapGenerator.toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			sitemapGenerator.atomicFileOutput().toGzipFile(directory.resolve("sitemap.xml.gz"));
+			assertEquals(sitemapGenerator.toString(), gunzip(Files.readAllBytes(directory.resolve("sitemap.xml.gz"))));
+			// no temporary files are left
+			try (Stream<Path> paths = Files.list(directory)) {
+				assertEquals(2, paths.count());
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(directory.resolve("sitemap.xml.gz"));
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	void testCacheOutput() throws Exception {
+		AtomicInteger renderCount = new AtomicInteger();
+		SitemapGenerator countingGenerator = new SitemapGenerator("http://www.javavids.com") {
+			@Override
+			protected void writeSitemap(Writer writer) throws IOException {
+				renderCount.incrementAndGet();
+				super.writeSitemap(writer);
+			}
+		};
+		countingGenerator.addPage("index.php").cacheOutput();
+		String expected = countingGenerator.toString();
+		String eTag = countingGenerator.getETag();
+		assertEquals(expected, countingGenerator.toString());
+		assertEquals(expected, new String(countingGenerator.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(expected, gunzip(countingGenerator.toGzipByteArray()));
+		assertEquals(eTag, countingGenerator.getETag());
+		assertNotEquals(eTag, countingGenerator.getGzipETag());
+		assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+		assertEquals(1, renderCount.get());
+
+		// adding page invalidates cache
+		countingGenerator.addPage("contact.php");
+		assertNotEquals(expected, countingGenerator.toString());
+		assertNotEquals(eTag, countingGenerator.getETag());
+		assertEquals(2, renderCount.get());
+
+		// gzip settings invalidate cache
+		String gzipETag = countingGenerator.getGzipETag();
+		countingGenerator.gzipLevel(Deflater.NO_COMPRESSION);
+		assertNotEquals(gzipETag, countingGenerator.getGzipETag());
+
+		countingGenerator.resetCacheOutput();
+		countingGenerator.toString();
+		countingGenerator.toString();
+		assertEquals(5, renderCount.get());
+
+		// output rendered while page was added isn't used
+		AtomicBoolean addPage = new AtomicBoolean(true);
+		SitemapGenerator changingGenerator = new SitemapGenerator("http://www.javavids.com") {
+			@Override
+			protected void writeSitemap(Writer writer) throws IOException {
+				super.writeSitemap(writer);
+				if (addPage.getAndSet(false)) {
+					addPage("contact.php");
+				}
+			}
+		};
+		changingGenerator.addPage("index.php").cacheOutput();
+		assertFalse(changingGenerator.toString().contains("contact.php"));
+		assertTrue(changingGenerator.toString().contains("contact.php"));
+		assertEquals(changingGenerator.toString(), new String(changingGenerator.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testCacheFragments() throws Exception {
+		AtomicInteger renderCount = new AtomicInteger();
+		SitemapGenerator countingGenerator = new SitemapGenerator("http://www.javavids.com") {
+			@Override
+			protected void writeUrl(Writer writer, WebPage webPage) throws IOException {
+				renderCount.incrementAndGet();
+				super.writeUrl(writer, webPage);
+			}
+		};
+		countingGenerator.cacheFragments()
+				.addPage(WebPage.builder().name("index.php").priority(1.0).build())
+				.addPage("latest.php")
+				.addPage("contact.php");
+		String expected = countingGenerator.toString();
+		assertEquals(3, renderCount.get());
+		assertEquals(expected, countingGenerator.toString());
+		assertEquals(3, renderCount.get());
+
+		// only replaced page is rendered again
+		countingGenerator.addPage(WebPage.builder().name("latest.php").lastMod(LocalDateTime.of(2019, 1, 1, 0, 0)).build());
+		String actual = countingGenerator.parallelRendering(1).toString();
+		assertEquals(4, renderCount.get());
+		assertEquals(actual, countingGenerator.resetCacheFragments().toString());
+		assertTrue(actual.contains("<lastmod>2019-01-01</lastmod>"));
+	}
+
+	@Test
+	void testCacheLastMod() throws Exception {
+		SitemapGenerator generator = SitemapGenerator.of("http://www.javavids.com")
+				.defaultLastMod(LocalDateTime.of(2019, 1, 1, 10, 30));
+		for (int i = 0; i < 100; i++) {
+			generator.addPage("page" + i);
+		}
+		generator.addPage(WebPage.builder().name("other").lastMod(LocalDateTime.of(2019, 2, 1, 0, 0)).build());
+		String expected = generator.toString();
+		assertNull(generator.getLastModCache());
+
+		assertEquals(expected, generator.cacheLastMod(16).toString());
+		LastModCache lastModCache = generator.getLastModCache();
+		assertEquals(2, lastModCache.getMisses());
+		assertEquals(99, lastModCache.getHits());
+		assertEquals(99 / 101.0, lastModCache.getHitRate(), 0.0001);
+		StringWriter writer = new StringWriter();
+		generator.writeTo(writer);
+		assertEquals(expected, writer.toString());
+		assertEquals(2, lastModCache.getMisses());
+		assertEquals(expected, generator.resetCacheLastMod().toString());
+	}
+
+	@Test
+	void testAsync() throws Exception {
+		assertEquals(sitemapGenerator.toString(), sitemapGenerator.toStringAsync().get());
+		assertEquals(sitemapGenerator.toString(), gunzip(sitemapGenerator.toGzipByteArrayAsync().get()));
+		File tmpFile = File.createTempFile("test", "sitemap.xml");
+		try {
+			assertSame(sitemapGenerator, sitemapGenerator.toFileAsync(tmpFile.toPath()).get());
+			assertEquals(sitemapGenerator.toString(), new String(Files.readAllBytes(tmpFile.toPath()), StandardCharsets.UTF_8));
+		} finally {
+			tmpFile.delete();
+		}
+	}
+
+	@Test
+	void testAsyncCancel() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicInteger renderCount = new AtomicInteger();
+		SitemapGenerator slowGenerator = new SitemapGenerator("http://www.javavids.com") {
+			@Override
+			protected void writeUrl(Writer writer, WebPage webPage) throws IOException {
+				started.countDown();
+				renderCount.incrementAndGet();
+				long end = System.nanoTime() + 1_000_000;
+				while (System.nanoTime() < end) {
+					Thread.onSpinWait();
+				}
+				super.writeUrl(writer, webPage);
+			}
+		};
+		for (int i = 0; i < 100_000; i++) {
+			slowGenerator.addPage("page" + i);
+		}
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<String> future = slowGenerator.toStringAsync(executorService);
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			assertTrue(future.cancel(true));
+			// rendering stops and interrupt doesn't leak into next task of the same thread
+			assertFalse(executorService.submit(() -> Thread.currentThread().isInterrupted()).get(10, TimeUnit.SECONDS));
+			int count = renderCount.get();
+			assertTrue(count < 100_000);
+			Thread.sleep(50);
+			assertEquals(count, renderCount.get());
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	void testWriteGzipToChannel() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		sitemapGenerator.gzipLevel(Deflater.NO_COMPRESSION).writeGzipTo(Channels.newChannel(outputStream));
+		assertEquals(sitemapGenerator.toString(), gunzip(outputStream.toByteArray()));
+	}
+
+	@Test
+	void testParallelGzip() throws Exception {
+		byte[] gzip = sitemapGenerator.parallelGzip(16).toGzipByteArray();
+		assertEquals(sitemapGenerator.toString(), gunzip(gzip));
+		gzip = sitemapGenerator.resetParallelGzip().toGzipByteArray();
+		assertEquals(sitemapGenerator.toString(), gunzip(gzip));
+	}
+
+	@Test
+	void testInvalidGzipLevel() {
+		assertThrows(IllegalArgumentException.class, () -> sitemapGenerator.gzipLevel(10));
+	}
+
+	private static String gunzip(byte[] gzip) throws IOException {
+		try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
 	@Test
 	void testConstructAndSaveSitemap() throws Exception {
 		File tmpFile = File.createTempFile("test", "sitemap");
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.xml.sax.SAXException;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 
@@ -48,6 +49,13 @@ class SitemapIndexGeneratorTest {
 		}
 	}
 
+	@Test
+	void testWriteToOutputStream() throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		sitemapIndexGenerator.writeTo(outputStream);
+		assertEquals(String.join("", sitemapIndexGenerator.toStringArray()), outputStream.toString("UTF-8"));
+	}
+
 	@Test
 	void testSitemapPathWithSpecialCharacters() {
 		sitemapIndexGenerator.addPage(WebPage.builder()
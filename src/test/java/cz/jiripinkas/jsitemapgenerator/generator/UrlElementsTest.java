@@ -0,0 +1,46 @@
+package cz.jiripinkas.jsitemapgenerator.generator;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlElementsTest {
+
+    @Test
+    void changeFreq() {
+        for (ChangeFreq changeFreq : ChangeFreq.values()) {
+            String expected = "<changefreq>" + changeFreq + "</changefreq>\n";
+            assertEquals(expected, UrlElements.changeFreq(changeFreq));
+            assertEquals(expected, new String(UrlElements.changeFreqUtf8(changeFreq), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void priority() {
+        Random random = new Random(1);
+        double[] priorities = new double[1000];
+        for (int i = 0; i < priorities.length; i++) {
+            priorities[i] = i % 2 == 0 ? (i / 2 % 101) / 100.0 : random.nextDouble();
+        }
+        for (double priority : priorities) {
+            assertPriority(priority);
+        }
+        assertPriority(0.1 + 0.2);
+        assertPriority(-0.0);
+        assertPriority(0.7);
+        assertPriority(1.0);
+        assertPriority(1.0 / 3);
+        assertSame(UrlElements.priority(0.5), UrlElements.priority(0.5));
+    }
+
+    private static void assertPriority(double priority) {
+        String expected = "<priority>" + Double.toString(priority) + "</priority>\n";
+        assertEquals(expected, UrlElements.priority(priority));
+        assertEquals(expected, new String(UrlElements.priorityUtf8(priority), StandardCharsets.UTF_8));
+    }
+
+}
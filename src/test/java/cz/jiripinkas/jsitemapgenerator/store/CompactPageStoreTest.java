@@ -0,0 +1,53 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.util.TestUtil;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactPageStoreTest {
+
+    @Test
+    void sameOutputAsSortedPageStore() {
+        TestUtil.assertSameOutputAsSortedPageStore(new CompactPageStore(), true);
+    }
+
+    @Test
+    void replacePage() {
+        CompactPageStore pageStore = new CompactPageStore();
+        pageStore.put("https://example.com/a", WebPage.builder().name("a").alternateName("de", "de/a").build());
+        assertTrue(pageStore.hasAlternateNames());
+        WebPage replacedWebPage = pageStore.put("https://example.com/a", WebPage.of("a"));
+        assertEquals("de/a", replacedWebPage.getAlternateNames().get("de"));
+        assertFalse(pageStore.hasAlternateNames());
+        assertEquals(1, pageStore.size());
+    }
+
+    @Test
+    void footprint() {
+        String name = "page";
+        String language = "de";
+        String alternateName = "de/page";
+        WebPage webPage = WebPage.builder()
+                .name(name)
+                .priority(0.5)
+                .lastMod(new Date())
+                .changeFreqDaily()
+                .alternateName(language, alternateName)
+                .build();
+        CompactPageRecord record = CompactPageRecord.of(name, webPage);
+        // strings are shared by WebPage and record
+        GraphLayout strings = GraphLayout.parseInstance(name, language, alternateName);
+        long webPageSize = GraphLayout.parseInstance(webPage).subtract(strings).totalSize();
+        long recordSize = GraphLayout.parseInstance(record).subtract(strings).totalSize();
+        assertTrue(recordSize * 2 < webPageSize, "record: " + recordSize + " bytes, WebPage: " + webPageSize + " bytes");
+        // object header, long, double, byte and three references (48 bytes with compressed references)
+        assertTrue(ClassLayout.parseClass(CompactPageRecord.class).instanceSize() <= 64);
+    }
+
+}
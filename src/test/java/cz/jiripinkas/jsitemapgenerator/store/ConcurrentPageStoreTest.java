@@ -0,0 +1,60 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentPageStoreTest {
+
+    private static final int THREADS = 8;
+
+    private static final int PAGES_PER_THREAD = 2000;
+
+    private static WebPage createWebPage(int thread, int i) {
+        // pages of different threads have the same priorities, so their order depends on URL
+        return WebPage.builder()
+                .name("page" + thread + "-" + i)
+                .priority((i % 3) / 2.0)
+                .build();
+    }
+
+    @Test
+    void concurrentAddPage() {
+        SitemapGenerator expected = SitemapGenerator.of("https://example.com").defaultChangeFreqDaily();
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < PAGES_PER_THREAD; i++) {
+                expected.addPage(createWebPage(thread, i));
+            }
+        }
+        SitemapGenerator sitemapGenerator = SitemapGenerator.of("https://example.com")
+                .defaultChangeFreqDaily()
+                .pageStore(new ConcurrentPageStore());
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int currentThread = thread;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < PAGES_PER_THREAD; i++) {
+                        sitemapGenerator.addPage(createWebPage(currentThread, i));
+                        // the same page is added by two threads
+                        sitemapGenerator.addPage(createWebPage(0, i));
+                    }
+                }, executorService));
+            }
+            futures.forEach(CompletableFuture::join);
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(expected.toString(), sitemapGenerator.toString());
+    }
+
+}
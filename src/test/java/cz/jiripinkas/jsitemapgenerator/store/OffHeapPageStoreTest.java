@@ -0,0 +1,68 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.Image;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.generator.Sharding;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import cz.jiripinkas.jsitemapgenerator.util.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapPageStoreTest {
+
+    @Test
+    void sameOutputAsSortedPageStore() {
+        TestUtil.assertSameOutputAsSortedPageStore(new OffHeapPageStore(), false);
+        TestUtil.assertSameOutputAsSortedPageStore(new OffHeapPageStore(100_000), false);
+    }
+
+    @Test
+    void sameShardedOutputAsSortedPageStore() throws Exception {
+        Path directory = Files.createTempDirectory("offheap");
+        try {
+            Sharding sharding = Sharding.builder().directory(directory.resolve("sorted")).maxUrls(300).build();
+            TestUtil.addRandomPages(SitemapGenerator.of("https://example.com"), 1, false).toShardedFiles(sharding);
+            Sharding offHeapSharding = Sharding.builder().directory(directory.resolve("offheap")).maxUrls(300).build();
+            TestUtil.addRandomPages(SitemapGenerator.of("https://example.com").pageStore(new OffHeapPageStore()), 1, false).toShardedFiles(offHeapSharding);
+            for (File file : directory.resolve("sorted").toFile().listFiles()) {
+                assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                        new String(Files.readAllBytes(directory.resolve("offheap").resolve(file.getName())), StandardCharsets.UTF_8));
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void replacePage() {
+        OffHeapPageStore pageStore = new OffHeapPageStore();
+        assertNull(pageStore.put("https://example.com/a", WebPage.builder().name("a").priority(0.5).build()));
+        WebPage replacedWebPage = pageStore.put("https://example.com/a", WebPage.builder().name("/a").changeFreqDaily().build());
+        assertEquals("a", replacedWebPage.getName());
+        assertEquals(Double.valueOf(0.5), replacedWebPage.getPriority());
+        assertEquals(1, pageStore.size());
+        WebPage webPage = pageStore.sortedValues().get(0);
+        assertNull(webPage.getPriority());
+        assertEquals(ChangeFreq.DAILY, webPage.getChangeFreq());
+        pageStore.forEach((url, page) -> assertEquals("https://example.com/a", url));
+    }
+
+    @Test
+    void unsupportedPage() {
+        OffHeapPageStore pageStore = new OffHeapPageStore();
+        WebPage webPage = WebPage.builder().name("a").build().addImage(new Image());
+        assertThrows(IllegalArgumentException.class, () -> pageStore.put("https://example.com/a", webPage));
+    }
+
+}
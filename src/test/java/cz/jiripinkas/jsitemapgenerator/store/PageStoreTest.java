@@ -0,0 +1,48 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import cz.jiripinkas.jsitemapgenerator.util.TestUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageStoreTest {
+
+    @Test
+    void hashPageStoreSameAsSortedPageStore() {
+        TestUtil.assertSameOutputAsSortedPageStore(new HashPageStore(), true);
+        TestUtil.assertSameOutputAsSortedPageStore(new HashPageStore(1000), true);
+    }
+
+    @Test
+    void insertionOrderPageStore() {
+        PageStore pageStore = new InsertionOrderPageStore();
+        WebPage first = WebPage.of("b");
+        WebPage second = WebPage.builder().name("a").priorityMax().build();
+        WebPage third = WebPage.of("c");
+        assertNull(pageStore.put("https://example.com/b", first));
+        pageStore.put("https://example.com/a", second);
+        pageStore.put("https://example.com/c", third);
+        WebPage replacement = WebPage.of("b");
+        assertSame(first, pageStore.put("https://example.com/b", replacement));
+        List<WebPage> sortedValues = pageStore.sortedValues();
+        assertEquals(3, pageStore.size());
+        assertSame(replacement, sortedValues.get(0));
+        assertSame(second, sortedValues.get(1));
+        assertSame(third, sortedValues.get(2));
+    }
+
+    @Test
+    void changePageStore() {
+        SitemapGenerator sitemapGenerator = TestUtil.addRandomPages(SitemapGenerator.of("https://example.com"), 1, true);
+        String expected = sitemapGenerator.toString();
+        PageStore pageStore = new HashPageStore();
+        sitemapGenerator.pageStore(pageStore);
+        assertFalse(pageStore.isEmpty());
+        assertEquals(expected, sitemapGenerator.toString());
+    }
+
+}
@@ -0,0 +1,104 @@
+package cz.jiripinkas.jsitemapgenerator.store;
+
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import cz.jiripinkas.jsitemapgenerator.util.TestUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingPageStoreTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("spilling");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.delete(directory);
+    }
+
+    private static SitemapGenerator addPages(SitemapGenerator sitemapGenerator, int seed) {
+        // pages are replaced by pages with different priority, also after they were spilled
+        return TestUtil.addRandomPages(sitemapGenerator, seed, false);
+    }
+
+    private int countFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return (int) paths.count();
+        }
+    }
+
+    @Test
+    void sameOutputAsSortedPageStore() throws IOException {
+        SortedPageStore sortedPageStore = new SortedPageStore();
+        SitemapGenerator expected = addPages(SitemapGenerator.of("https://example.com").pageStore(sortedPageStore), 1);
+        try (SpillingPageStore pageStore = new SpillingPageStore(50, directory)) {
+            SitemapGenerator sitemapGenerator = addPages(SitemapGenerator.of("https://example.com").pageStore(pageStore), 1);
+            assertTrue(countFiles() > 1);
+            assertEquals(expected.toString(), sitemapGenerator.toString());
+            assertEquals(expected.toString(), sitemapGenerator.toString());
+            // replaced pages are removed when pages are merged
+            assertEquals(sortedPageStore.size(), pageStore.size());
+
+            addPages(expected, 2);
+            addPages(sitemapGenerator, 2);
+            assertEquals(expected.toString(), sitemapGenerator.toString());
+        }
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void moreRunsThanFanIn() throws IOException {
+        SitemapGenerator expected = addPages(SitemapGenerator.of("https://example.com"), 1);
+        try (SpillingPageStore pageStore = new SpillingPageStore(1, directory)) {
+            SitemapGenerator sitemapGenerator = addPages(SitemapGenerator.of("https://example.com").pageStore(pageStore), 1);
+            assertTrue(countFiles() > SpillingPageStore.MAX_FAN_IN);
+            assertEquals(expected.toString(), sitemapGenerator.toString());
+            // single run merged by name and at most MAX_FAN_IN runs in render order
+            assertTrue(countFiles() <= SpillingPageStore.MAX_FAN_IN + 1);
+        }
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void mergedRunsAreReused() throws IOException {
+        try (SpillingPageStore pageStore = new SpillingPageStore(50, directory)) {
+            SitemapGenerator sitemapGenerator = addPages(SitemapGenerator.of("https://example.com").pageStore(pageStore), 1);
+            Iterator<PageRecord> records = pageStore.sortedRecords();
+            PageRecord first = records.next();
+            int files = countFiles();
+            // no page was added, runs aren't rewritten and iterator which is in use stays open
+            assertEquals(first.getName(), pageStore.sortedValues().get(0).getName());
+            assertEquals(files, countFiles());
+            int count = 1;
+            while (records.hasNext()) {
+                records.next();
+                count++;
+            }
+            assertEquals(pageStore.size(), count);
+            assertEquals(sitemapGenerator.toString(), sitemapGenerator.toString());
+        }
+    }
+
+    @Test
+    void notSpilled() throws IOException {
+        SitemapGenerator expected = addPages(SitemapGenerator.of("https://example.com"), 1);
+        try (SpillingPageStore pageStore = new SpillingPageStore(10_000, directory)) {
+            SitemapGenerator sitemapGenerator = addPages(SitemapGenerator.of("https://example.com").pageStore(pageStore), 1);
+            assertEquals(expected.toString(), sitemapGenerator.toString());
+            assertEquals(0, countFiles());
+        }
+    }
+
+}
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Date;
+import java.util.Random;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
@@ -12,10 +14,23 @@ import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
+import cz.jiripinkas.jsitemapgenerator.ChangeFreq;
+import cz.jiripinkas.jsitemapgenerator.Image;
+import cz.jiripinkas.jsitemapgenerator.WebPage;
+import cz.jiripinkas.jsitemapgenerator.generator.SitemapGenerator;
+import cz.jiripinkas.jsitemapgenerator.store.PageStore;
+import cz.jiripinkas.jsitemapgenerator.store.SortedPageStore;
 import org.xml.sax.SAXException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 public class TestUtil {
 
+	/**
+	 * Names of random pages: with leading "/", with characters which are escaped and with non-ASCII characters
+	 */
+	private static final String[] NAMES = {"page", "/page", "a&b", "été", "Ａ", "😀", "x", "x😀"};
+
 	public static void testSitemapXsd(InputStream sitemapXml, File xsd) throws SAXException, IOException {
 		Source xmlFile = new StreamSource(sitemapXml);
 		SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
@@ -30,4 +45,57 @@ public class TestUtil {
 		}
 	}
 
+	/**
+	 * Add 1000 random pages. Many of them replace pages which were added earlier (also "page1" and "/page1"),
+	 * some pages don't have name, priority, lastMod or changeFreq.
+	 *
+	 * @param sitemapGenerator        Generator
+	 * @param seed                    Seed of random pages
+	 * @param imagesAndAlternateNames If some pages have images and alternate names
+	 * @return sitemapGenerator
+	 */
+	public static SitemapGenerator addRandomPages(SitemapGenerator sitemapGenerator, int seed, boolean imagesAndAlternateNames) {
+		Random random = new Random(seed);
+		for (int i = 0; i < 1000; i++) {
+			WebPage.WebPageBuilder builder = WebPage.builder();
+			if (random.nextInt(100) != 0) {
+				builder.name(NAMES[random.nextInt(NAMES.length)] + random.nextInt(100));
+			}
+			if (random.nextBoolean()) {
+				builder.priority(random.nextInt(3) / 2.0);
+			}
+			if (random.nextBoolean()) {
+				builder.lastMod(new Date(1_500_000_000_000L + random.nextInt(1_000_000_000)));
+			}
+			if (random.nextBoolean()) {
+				builder.changeFreq(ChangeFreq.values()[random.nextInt(ChangeFreq.values().length)]);
+			}
+			WebPage webPage = builder.build();
+			if (imagesAndAlternateNames && random.nextInt(10) == 0) {
+				Image image = new Image();
+				image.setLoc("image" + i + ".png");
+				image.setTitle("Image & title");
+				webPage.addImage(image);
+			}
+			if (imagesAndAlternateNames && random.nextInt(10) == 0) {
+				webPage.addAlternateName("de", "de/page" + i);
+				webPage.addAlternateName("fr", "fr/page" + i);
+			}
+			sitemapGenerator.addPage(webPage);
+		}
+		return sitemapGenerator;
+	}
+
+	/**
+	 * Check that sitemap of random pages (see {@link #addRandomPages(SitemapGenerator, int, boolean)}) in page store
+	 * is the same as sitemap of the same pages in {@link SortedPageStore}
+	 *
+	 * @param pageStore               Empty page store
+	 * @param imagesAndAlternateNames If some pages have images and alternate names
+	 */
+	public static void assertSameOutputAsSortedPageStore(PageStore pageStore, boolean imagesAndAlternateNames) {
+		String expected = addRandomPages(SitemapGenerator.of("https://example.com").pageStore(new SortedPageStore()), 1, imagesAndAlternateNames).toString();
+		assertEquals(expected, addRandomPages(SitemapGenerator.of("https://example.com").pageStore(pageStore), 1, imagesAndAlternateNames).toString());
+	}
+
 }